@@ -0,0 +1,72 @@
+package com.letterfrequency.benchmark;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.service.CombinedLanguageDetectionService;
+import com.letterfrequency.service.DetectionContext;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that steady-state detection allocates nothing. For each language and input
+ * size, the combined service scores the text into a reused DetectionContext until it
+ * is warmed up, then the bytes the thread allocates over many more calls are measured
+ * with ThreadMXBean.getThreadAllocatedBytes. Any allocation fails the check with exit
+ * status 1. The build enforces the same property with AllocationTest; this check
+ * reports bytes per call on the benchmark corpus.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.letterfrequency.benchmark.AllocationCheck [calls=10000]
+ * </pre>
+ */
+public final class AllocationCheck {
+    private static final int[] SIZES = {50, 1000, 10_000};
+    private static final int WARMUP_CALLS = 20_000;
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Thread allocation counting is not supported by this JVM");
+            System.exit(2);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        CombinedLanguageDetectionService service = new CombinedLanguageDetectionService();
+        DetectionContext context = new DetectionContext();
+        long threadId = Thread.currentThread().getId();
+
+        // Reading the counter may itself allocate; measure that once and subtract it
+        long overhead = threads.getThreadAllocatedBytes(threadId);
+        overhead = threads.getThreadAllocatedBytes(threadId) - overhead;
+
+        boolean failed = false;
+        for (int size : SIZES) {
+            for (Language language : Language.values()) {
+                String text = Corpus.generate(language, size);
+                for (int i = 0; i < WARMUP_CALLS * 50 / size + 10; i++) {
+                    service.detectLanguage(text, context);
+                }
+
+                long before = threads.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < calls; i++) {
+                    service.detectLanguage(text, context);
+                }
+                long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+
+                boolean ok = allocated <= 0;
+                failed |= !ok;
+                System.out.printf("%-8s %6d chars: %,d bytes over %,d calls (%.2f bytes/call) %s%n",
+                    language, size, Math.max(allocated, 0), calls, Math.max(allocated, 0) / (double) calls,
+                    ok ? "ok" : "FAILED");
+            }
+        }
+
+        if (failed) {
+            System.out.println("Steady-state detection allocated memory");
+            System.exit(1);
+        }
+        System.out.println("Steady-state detection allocates nothing");
+    }
+}
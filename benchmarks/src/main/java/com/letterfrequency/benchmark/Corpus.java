@@ -0,0 +1,62 @@
+package com.letterfrequency.benchmark;
+
+import com.letterfrequency.model.Language;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Reproducible benchmark input. Each language has a bundled file of sample sentences;
+ * a text of the requested size is made by drawing sentences with a fixed seed, so
+ * every run and every machine benchmarks exactly the same characters.
+ */
+public final class Corpus {
+    private static final long SEED = 0x5EEDL;
+
+    private Corpus() {
+    }
+
+    /**
+     * Text of exactly the given number of characters in the given language.
+     */
+    public static String generate(Language language, int size) {
+        List<String> sentences = loadSentences(language);
+        Random random = new Random(SEED + language.ordinal());
+        StringBuilder text = new StringBuilder(size + 256);
+        while (text.length() < size) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(sentences.get(random.nextInt(sentences.size())));
+        }
+        text.setLength(size);
+        return text.toString();
+    }
+
+    private static List<String> loadSentences(Language language) {
+        String resource = "/corpus/" + language.name().toLowerCase(Locale.ROOT) + ".txt";
+        try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing corpus resource " + resource);
+            }
+            List<String> sentences = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    sentences.add(line.trim());
+                }
+            }
+            return sentences;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.letterfrequency.benchmark;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.service.CombinedLanguageDetectionService;
+import com.letterfrequency.service.DetectionContext;
+import com.letterfrequency.service.FrequencyAnalysisService;
+import com.letterfrequency.service.HashedNgramAnalysisService;
+import com.letterfrequency.service.IncrementalDetector;
+import com.letterfrequency.service.IndexOfCoincidenceService;
+import com.letterfrequency.service.LevenshteinAnalysisService;
+import com.letterfrequency.service.NgramAnalysisService;
+import com.letterfrequency.service.SegmentationService;
+import com.letterfrequency.service.StopwordAnalysisService;
+import com.letterfrequency.service.TextFeatures;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every detector on its own and the combined pipeline, from the raw text to the scores,
+ * for each input size and language.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectorBenchmark {
+    // Input sizes in characters, from a short sentence to 10 MB
+    @Param({"50", "1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"ENGLISH", "DUTCH", "FRENCH", "ITALIAN", "GERMAN"})
+    private Language language;
+
+    private String text;
+    private TextFeatures features;
+    private final double[] logLikelihoods = new double[Language.values().length];
+
+    private FrequencyAnalysisService frequencyService;
+    private NgramAnalysisService ngramService;
+    private StopwordAnalysisService stopwordService;
+    private IndexOfCoincidenceService icService;
+    private LevenshteinAnalysisService levenshteinService;
+    private HashedNgramAnalysisService hashedNgramService;
+    private CombinedLanguageDetectionService combinedService;
+    private SegmentationService segmentationService;
+    private IncrementalDetector incrementalDetector;
+    private final DetectionContext context = new DetectionContext();
+
+    @Setup
+    public void setUp() {
+        text = Corpus.generate(language, size);
+        features = TextFeatures.extract(text);
+        frequencyService = new FrequencyAnalysisService();
+        ngramService = new NgramAnalysisService();
+        stopwordService = new StopwordAnalysisService();
+        icService = new IndexOfCoincidenceService();
+        levenshteinService = new LevenshteinAnalysisService();
+        hashedNgramService = new HashedNgramAnalysisService();
+        combinedService = new CombinedLanguageDetectionService();
+        segmentationService = new SegmentationService(combinedService);
+        incrementalDetector = new IncrementalDetector(combinedService, text);
+    }
+
+    @Benchmark
+    public TextFeatures featureExtraction() {
+        return TextFeatures.extract(text);
+    }
+
+    @Benchmark
+    public Map<Language, Double> frequency() {
+        return frequencyService.getLanguageScores(text);
+    }
+
+    @Benchmark
+    public Map<Language, Double> ngram() {
+        return ngramService.getLanguageScores(text);
+    }
+
+    @Benchmark
+    public Map<Language, Double> stopword() {
+        return stopwordService.getLanguageScores(text);
+    }
+
+    @Benchmark
+    public Map<Language, Double> indexOfCoincidence() {
+        return icService.getLanguageScores(text);
+    }
+
+    @Benchmark
+    public Map<Language, Double> levenshtein() {
+        return levenshteinService.getLanguageScores(text);
+    }
+
+    @Benchmark
+    public Map<Language, Double> hashedNgram() {
+        return hashedNgramService.getLanguageScores(text);
+    }
+
+    /**
+     * The hashed n-gram sums alone, into a reused array; should not allocate.
+     */
+    @Benchmark
+    public long hashedNgramKernel() {
+        return hashedNgramService.calculateLogLikelihoods(features, logLikelihoods);
+    }
+
+    @Benchmark
+    public Map<Language, Double> combined() {
+        return combinedService.getLanguageScores(text);
+    }
+
+    /**
+     * The combined weighting alone, on features extracted beforehand.
+     */
+    @Benchmark
+    public Map<Language, Double> combinedFromFeatures() {
+        return combinedService.getLanguageScores(features);
+    }
+
+    /**
+     * The combined pipeline into a reused context; should not allocate once warmed up.
+     */
+    @Benchmark
+    public Language combinedWithContext() {
+        return combinedService.detectLanguage(text, context);
+    }
+
+    /**
+     * Segmentation with the default window; the time per character should not depend on the size.
+     */
+    @Benchmark
+    public List<SegmentationService.Segment> segmentation() {
+        return segmentationService.segment(text);
+    }
+
+    /**
+     * A keystroke in the middle of the text and its undo, each followed by detection;
+     * the time should not depend on the size.
+     */
+    @Benchmark
+    public Language keystroke() {
+        int middle = text.length() / 2;
+        incrementalDetector.insert(middle, "e");
+        incrementalDetector.getLanguage();
+        incrementalDetector.delete(middle, 1);
+        return incrementalDetector.getLanguage();
+    }
+}
@@ -0,0 +1,128 @@
+package com.letterfrequency.benchmark;
+
+import com.letterfrequency.metrics.LatencyHistogram;
+import com.letterfrequency.model.Language;
+import com.letterfrequency.server.DetectionServer;
+import com.letterfrequency.service.CombinedLanguageDetectionService;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load test of the detection server's POST /detect. A fixed number of
+ * clients each send one request after another for the given time; the test prints
+ * the throughput and latency percentiles of the successful requests and how many
+ * were shed with 503. Without a URL it starts a server in-process on a free port.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.letterfrequency.benchmark.ServerLoadTest \
+ *     [clients=64] [seconds=30] [text-size=1000] [url]
+ * </pre>
+ */
+public final class ServerLoadTest {
+    private ServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int textSize = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        DetectionServer server = null;
+        URI uri;
+        if (args.length > 3) {
+            uri = URI.create(args[3]);
+        } else {
+            server = new DetectionServer(new CombinedLanguageDetectionService(), new InetSocketAddress("localhost", 0),
+                DetectionServer.DEFAULT_MAX_CONCURRENT_REQUESTS);
+            server.start();
+            uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/detect");
+        }
+
+        List<byte[]> bodies = new ArrayList<>();
+        for (Language language : Language.values()) {
+            bodies.add(Corpus.generate(language, textSize).getBytes(StandardCharsets.UTF_8));
+        }
+
+        System.out.printf("%d clients for %d s against %s, %d-character texts%n", clients, seconds, uri, textSize);
+        // Warm up the server and client for a fifth of the run, then measure
+        run(uri, bodies, clients, Math.max(1, seconds / 5));
+        Result result = run(uri, bodies, clients, seconds);
+        result.print(seconds);
+
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private static Result run(URI uri, List<byte[]> bodies, int clients, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Result result = new Result();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            int clientIndex = c;
+            pool.execute(() -> {
+                int i = clientIndex;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(bodies.get(i++ % bodies.size())))
+                        .build();
+                    long start = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        result.record(status, System.nanoTime() - start);
+                    } catch (IOException e) {
+                        result.errors.increment();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        return result;
+    }
+
+    private static final class Result {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        void record(int status, long nanos) {
+            if (status == 200) {
+                ok.increment();
+                latency.record(nanos);
+            } else if (status == 503) {
+                shed.increment();
+            } else {
+                failed.increment();
+            }
+        }
+
+        void print(int seconds) {
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            System.out.printf("Throughput: %.1f requests/s%n", ok.sum() / (double) seconds);
+            System.out.printf("Latency: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                snapshot.getValueAtPercentile(50.0) / 1e6, snapshot.getValueAtPercentile(90.0) / 1e6,
+                snapshot.getValueAtPercentile(99.0) / 1e6, snapshot.getValueAtPercentile(99.9) / 1e6,
+                snapshot.getMax() / 1e6);
+            System.out.printf("Requests: %d ok, %d shed (503), %d failed, %d connection errors%n",
+                ok.sum(), shed.sum(), failed.sum(), errors.sum());
+        }
+    }
+}
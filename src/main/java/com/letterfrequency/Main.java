@@ -1,9 +1,51 @@
 package com.letterfrequency;
 
+import com.letterfrequency.server.DetectionServer;
+import com.letterfrequency.service.CombinedLanguageDetectionService;
+import com.letterfrequency.ui.BatchCommand;
 import com.letterfrequency.ui.ConsoleUI;
+import com.letterfrequency.ui.TrainingCommand;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
 public class Main {
-    public static void main(String[] args) {
-        ConsoleUI ui = new ConsoleUI();
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("train")) {
+            System.exit(new TrainingCommand().run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("detect")) {
+            System.exit(new BatchCommand().run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("server")) {
+            startServer(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        CombinedLanguageDetectionService service = new CombinedLanguageDetectionService();
+        // Lets JConsole and other JMX clients watch the detectors
+        service.getMetrics().registerMBean();
+        ConsoleUI ui = new ConsoleUI(service);
         ui.start();
     }
+
+    /**
+     * Serve detection over HTTP until the process is stopped.
+     * Arguments: [port] [max-concurrent-requests] [max-batch-bytes] [max-batch-texts]
+     */
+    private static void startServer(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DetectionServer.DEFAULT_PORT;
+        int maxConcurrentRequests = args.length > 1
+            ? Integer.parseInt(args[1]) : DetectionServer.DEFAULT_MAX_CONCURRENT_REQUESTS;
+        long maxBatchBytes = args.length > 2 ? Long.parseLong(args[2]) : DetectionServer.DEFAULT_MAX_BATCH_BYTES;
+        int maxBatchTexts = args.length > 3 ? Integer.parseInt(args[3]) : DetectionServer.DEFAULT_MAX_BATCH_TEXTS;
+
+        CombinedLanguageDetectionService service = new CombinedLanguageDetectionService();
+        service.getMetrics().registerMBean();
+        DetectionServer server = new DetectionServer(service, new InetSocketAddress(port), maxConcurrentRequests,
+            maxBatchBytes, maxBatchTexts);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Listening on port " + server.getAddress().getPort()
+            + ", at most " + maxConcurrentRequests + " concurrent requests");
+    }
 }
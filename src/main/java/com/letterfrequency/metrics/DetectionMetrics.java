@@ -0,0 +1,130 @@
+package com.letterfrequency.metrics;
+
+import com.letterfrequency.model.Language;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Call counts, latencies and characters processed per detector, and how often each
+ * language wins. Recording only touches LongAdders and atomic histogram buckets, so
+ * it is lock-free and cheap enough for every call on the hot path; reading takes a
+ * snapshot, which may miss calls recorded while it is taken.
+ */
+public class DetectionMetrics implements DetectionMetricsMXBean {
+    public static final String DEFAULT_OBJECT_NAME = "com.letterfrequency:type=DetectionMetrics";
+
+    private static final Detector[] DETECTORS = Detector.values();
+    private static final Language[] LANGUAGES = Language.values();
+
+    private final Recorder[] recorders = new Recorder[DETECTORS.length];
+    private final LongAdder[] wins = new LongAdder[LANGUAGES.length];
+
+    public DetectionMetrics() {
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder();
+        }
+        for (int i = 0; i < wins.length; i++) {
+            wins[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record one call of a detector.
+     *
+     * @param detector The detector that ran
+     * @param nanos How long the call took
+     * @param chars Number of characters it processed
+     */
+    public void record(Detector detector, long nanos, long chars) {
+        Recorder recorder = recorders[detector.ordinal()];
+        recorder.calls.increment();
+        recorder.totalNanos.add(nanos);
+        recorder.chars.add(chars);
+        recorder.latency.record(nanos);
+    }
+
+    /**
+     * Record the language that won a combined call.
+     */
+    public void recordWinner(Language language) {
+        wins[language.ordinal()].increment();
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<Detector, DetectorStats> detectors = new EnumMap<>(Detector.class);
+        for (Detector detector : DETECTORS) {
+            Recorder recorder = recorders[detector.ordinal()];
+            detectors.put(detector, new DetectorStats(recorder.calls.sum(), recorder.totalNanos.sum(),
+                recorder.chars.sum(), recorder.latency.snapshot()));
+        }
+        Map<Language, Long> winners = new EnumMap<>(Language.class);
+        for (Language language : LANGUAGES) {
+            winners.put(language, wins[language.ordinal()].sum());
+        }
+        return new MetricsSnapshot(detectors, winners);
+    }
+
+    @Override
+    public Map<String, DetectorStats> getDetectors() {
+        Map<String, DetectorStats> detectors = new LinkedHashMap<>();
+        for (Map.Entry<Detector, DetectorStats> entry : snapshot().getDetectorStats().entrySet()) {
+            detectors.put(entry.getKey().getMetricName(), entry.getValue());
+        }
+        return detectors;
+    }
+
+    @Override
+    public Map<String, Long> getWinningLanguages() {
+        Map<String, Long> winners = new LinkedHashMap<>();
+        for (Language language : LANGUAGES) {
+            winners.put(language.getDisplayName(), wins[language.ordinal()].sum());
+        }
+        return winners;
+    }
+
+    /**
+     * Register these metrics with the platform MBean server under DEFAULT_OBJECT_NAME,
+     * replacing the metrics registered there before.
+     */
+    public ObjectName registerMBean() {
+        return registerMBean(DEFAULT_OBJECT_NAME);
+    }
+
+    /**
+     * Register these metrics with the platform MBean server. An MBean already registered
+     * under the name, such as the metrics of an earlier service in the same JVM, is
+     * unregistered first, so registering again under the same name always succeeds.
+     *
+     * @param name Object name, e.g. DEFAULT_OBJECT_NAME
+     * @return The name it was registered under
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // Registrations through this class are serialized, so none comes between the two calls
+            synchronized (DetectionMetrics.class) {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(this, objectName);
+            }
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics MBean " + name, e);
+        }
+    }
+
+    private static final class Recorder {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder chars = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
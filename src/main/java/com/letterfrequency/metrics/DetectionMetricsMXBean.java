@@ -0,0 +1,18 @@
+package com.letterfrequency.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of DetectionMetrics. Every attribute is computed from a fresh snapshot.
+ */
+public interface DetectionMetricsMXBean {
+    /**
+     * Statistics per detector, keyed by Detector.getMetricName().
+     */
+    Map<String, DetectorStats> getDetectors();
+
+    /**
+     * How many combined calls each language won, keyed by display name.
+     */
+    Map<String, Long> getWinningLanguages();
+}
@@ -0,0 +1,27 @@
+package com.letterfrequency.metrics;
+
+/**
+ * The detectors measured by DetectionMetrics, plus the combined call that runs them all.
+ */
+public enum Detector {
+    FREQUENCY("frequency"),
+    NGRAM("ngram"),
+    STOPWORD("stopword"),
+    INDEX_OF_COINCIDENCE("indexOfCoincidence"),
+    LEVENSHTEIN("levenshtein"),
+    HASHED_NGRAM("hashedNgram"),
+    COMBINED("combined");
+
+    private final String metricName;
+
+    Detector(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * Name of the detector in metric keys and JMX attributes.
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,68 @@
+package com.letterfrequency.metrics;
+
+/**
+ * Snapshot of the metrics of one detector. Latencies are in nanoseconds.
+ */
+public final class DetectorStats {
+    private final long calls;
+    private final long totalNanos;
+    private final long charsProcessed;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    DetectorStats(long calls, long totalNanos, long charsProcessed, LatencyHistogram.Snapshot latency) {
+        this.calls = calls;
+        this.totalNanos = totalNanos;
+        this.charsProcessed = charsProcessed;
+        this.p50Nanos = latency.getValueAtPercentile(50.0);
+        this.p90Nanos = latency.getValueAtPercentile(90.0);
+        this.p99Nanos = latency.getValueAtPercentile(99.0);
+        this.p999Nanos = latency.getValueAtPercentile(99.9);
+        this.maxNanos = latency.getMax();
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMeanNanos() {
+        return calls == 0 ? 0 : totalNanos / calls;
+    }
+
+    public long getCharsProcessed() {
+        return charsProcessed;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("calls=%d chars=%d mean=%dns p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+            calls, charsProcessed, getMeanNanos(), p50Nanos, p90Nanos, p99Nanos, p999Nanos, maxNanos);
+    }
+}
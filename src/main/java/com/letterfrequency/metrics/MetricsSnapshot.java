@@ -0,0 +1,33 @@
+package com.letterfrequency.metrics;
+
+import com.letterfrequency.model.Language;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Point-in-time copy of DetectionMetrics.
+ */
+public final class MetricsSnapshot {
+    private final Map<Detector, DetectorStats> detectorStats;
+    private final Map<Language, Long> winningLanguages;
+
+    MetricsSnapshot(Map<Detector, DetectorStats> detectorStats, Map<Language, Long> winningLanguages) {
+        this.detectorStats = Collections.unmodifiableMap(detectorStats);
+        this.winningLanguages = Collections.unmodifiableMap(winningLanguages);
+    }
+
+    public DetectorStats getDetectorStats(Detector detector) {
+        return detectorStats.get(detector);
+    }
+
+    public Map<Detector, DetectorStats> getDetectorStats() {
+        return detectorStats;
+    }
+
+    /**
+     * How many combined calls each language won.
+     */
+    public Map<Language, Long> getWinningLanguages() {
+        return winningLanguages;
+    }
+}
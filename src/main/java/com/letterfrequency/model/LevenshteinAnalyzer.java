@@ -3,39 +3,12 @@ package com.letterfrequency.model;
 import java.util.List;
 import java.util.Map;
 import com.letterfrequency.model.Language;
+import com.letterfrequency.util.EditDistance;
+import com.letterfrequency.util.Tokenizer;
 
 public class LevenshteinAnalyzer {
     public static int calculateDistance(String word1, String word2) {
-        word1 = word1.toLowerCase();
-        word2 = word2.toLowerCase();
-        
-        int[][] dp = new int[word1.length() + 1][word2.length() + 1];
-        
-        for (int i = 0; i <= word1.length(); i++) {
-            dp[i][0] = i;
-        }
-        
-        for (int j = 0; j <= word2.length(); j++) {
-            dp[0][j] = j;
-        }
-        
-        for (int i = 1; i <= word1.length(); i++) {
-            for (int j = 1; j <= word2.length(); j++) {
-                if (word1.charAt(i - 1) == word2.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1];
-                } else {
-                    dp[i][j] = 1 + Math.min(
-                        dp[i - 1][j - 1], // replace
-                        Math.min(
-                            dp[i - 1][j],   // delete
-                            dp[i][j - 1]    // insert
-                        )
-                    );
-                }
-            }
-        }
-        
-        return dp[word1.length()][word2.length()];
+        return EditDistance.distance(Tokenizer.fold(word1), Tokenizer.fold(word2));
     }
     
     public static double calculateSimilarity(String word1, String word2) {
@@ -47,12 +20,20 @@ public class LevenshteinAnalyzer {
     public static Language findClosestLanguage(String word, Map<Language, List<String>> commonWords) {
         double bestScore = -1;
         Language bestMatch = Language.ENGLISH; // default
+        String lowerWord = Tokenizer.fold(word);
         
         for (Map.Entry<Language, List<String>> entry : commonWords.entrySet()) {
-            double languageScore = entry.getValue().stream()
-                .mapToDouble(commonWord -> calculateSimilarity(word, commonWord))
-                .max()
-                .orElse(0.0);
+            double languageScore = entry.getValue().isEmpty() ? 0.0 : -1;
+            
+            for (String commonWord : entry.getValue()) {
+                int maxLength = Math.max(word.length(), commonWord.length());
+                // Stop comparing once the distance can no longer beat the best similarity
+                double threshold = Math.max(bestScore, languageScore);
+                int maxDistance = threshold < 0 ? maxLength : (int) Math.floor((1.0 - threshold) * maxLength);
+                int distance = EditDistance.distance(lowerWord, Tokenizer.fold(commonWord), maxDistance);
+                double similarity = maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
+                languageScore = Math.max(languageScore, similarity);
+            }
                 
             if (languageScore > bestScore) {
                 bestScore = languageScore;
@@ -0,0 +1,126 @@
+package com.letterfrequency.profile;
+
+import com.letterfrequency.model.Language;
+import java.util.List;
+
+/**
+ * Reference statistics of one language, as dense arrays ready for scoring.
+ * The arrays are shared by every service using the profile and must not be modified.
+ */
+public final class LanguageProfile {
+    public static final int ALPHABET_SIZE = 26;
+    public static final int BIGRAM_COUNT = ALPHABET_SIZE * ALPHABET_SIZE;
+
+    private final Language language;
+    private final double expectedIC;
+    private final double accentedShare;
+    private final double[] letterFrequencies;
+    private final double[] bigramFrequencies;
+    private final List<String> stopwords;
+    private final List<String> commonWords;
+    private final float[] ngramLogProbabilities;
+
+    /**
+     * @param language The language described
+     * @param expectedIC Index of coincidence of typical text
+     * @param letterFrequencies Relative frequency of each letter, indexed by (letter - 'a')
+     * @param bigramFrequencies Relative frequency of each bigram, indexed by
+     *                          (first - 'a') * 26 + (second - 'a'); 0 for bigrams not in the profile
+     * @param stopwords Words matched exactly
+     * @param commonWords Vocabulary for fuzzy word matching
+     */
+    public LanguageProfile(Language language, double expectedIC, double[] letterFrequencies,
+                           double[] bigramFrequencies, List<String> stopwords, List<String> commonWords) {
+        this(language, expectedIC, letterFrequencies, bigramFrequencies, stopwords, commonWords, new float[0]);
+    }
+
+    /**
+     * @param ngramLogProbabilities Log-probability of each bucket of the hashed 1-4-gram table,
+     *                              empty if the profile has no table; the size is a power of two.
+     *                              The share of accented letters is what the letter frequencies leave
+     *                              of 1, as in profiles whose frequencies leave accented letters out.
+     */
+    public LanguageProfile(Language language, double expectedIC, double[] letterFrequencies,
+                           double[] bigramFrequencies, List<String> stopwords, List<String> commonWords,
+                           float[] ngramLogProbabilities) {
+        this(language, expectedIC, Math.max(0.0, 1.0 - sum(letterFrequencies)), letterFrequencies,
+            bigramFrequencies, stopwords, commonWords, ngramLogProbabilities);
+    }
+
+    /**
+     * @param accentedShare Share of letters with diacritics among all letters; the letter
+     *                      frequencies then count each of them under its base letter
+     */
+    public LanguageProfile(Language language, double expectedIC, double accentedShare, double[] letterFrequencies,
+                           double[] bigramFrequencies, List<String> stopwords, List<String> commonWords,
+                           float[] ngramLogProbabilities) {
+        if (letterFrequencies.length != ALPHABET_SIZE || bigramFrequencies.length != BIGRAM_COUNT) {
+            throw new IllegalArgumentException("Expected " + ALPHABET_SIZE + " letter and " + BIGRAM_COUNT
+                + " bigram frequencies for " + language);
+        }
+        this.language = language;
+        this.expectedIC = expectedIC;
+        this.accentedShare = accentedShare;
+        this.letterFrequencies = letterFrequencies;
+        this.bigramFrequencies = bigramFrequencies;
+        this.stopwords = List.copyOf(stopwords);
+        this.commonWords = List.copyOf(commonWords);
+        if (ngramLogProbabilities.length != 0 && Integer.bitCount(ngramLogProbabilities.length) != 1) {
+            throw new IllegalArgumentException("N-gram table size must be a power of two for " + language
+                + ": " + ngramLogProbabilities.length);
+        }
+        this.ngramLogProbabilities = ngramLogProbabilities;
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public double getExpectedIC() {
+        return expectedIC;
+    }
+
+    /**
+     * Share of letters with diacritics, such as 0.02 for 2 in every 100 letters.
+     */
+    public double getAccentedShare() {
+        return accentedShare;
+    }
+
+    /**
+     * Relative letter frequencies indexed by (letter - 'a'). Shared, must not be modified.
+     */
+    public double[] getLetterFrequencies() {
+        return letterFrequencies;
+    }
+
+    /**
+     * Relative bigram frequencies indexed by the packed bigram. Shared, must not be modified.
+     */
+    public double[] getBigramFrequencies() {
+        return bigramFrequencies;
+    }
+
+    public List<String> getStopwords() {
+        return stopwords;
+    }
+
+    public List<String> getCommonWords() {
+        return commonWords;
+    }
+
+    /**
+     * Hashed 1-4-gram log-probabilities, empty if the profile has none. Shared, must not be modified.
+     */
+    public float[] getNgramLogProbabilities() {
+        return ngramLogProbabilities;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
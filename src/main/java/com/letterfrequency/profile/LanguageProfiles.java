@@ -0,0 +1,214 @@
+package com.letterfrequency.profile;
+
+import com.letterfrequency.model.Language;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The profiles of all languages, read from one versioned binary file.
+ *
+ * <p>File layout, big-endian:
+ * <pre>
+ * int     magic "LFPF"
+ * short   format version
+ * short   number of languages
+ * per language:
+ *   string   Language enum name
+ *   double   expected index of coincidence
+ *   double   share of accented letters (version 3 and later)
+ *   double[26]  letter frequencies, a to z, accented letters under their base letter
+ *               from version 3, left out before
+ *   double[676] bigram frequencies, packed as (first - 'a') * 26 + (second - 'a')
+ *   int      stopword count, then that many strings
+ *   int      common word count, then that many strings
+ *   int      hashed n-gram table size, then that many floats (version 2 and later)
+ * string = unsigned short byte length, then UTF-8 bytes
+ * </pre>
+ * The arrays are read with bulk copies straight from a memory-mapped file, so
+ * loading is fast and allocates little beyond the arrays themselves.
+ */
+public final class LanguageProfiles {
+    public static final int MAGIC = 0x4C465046;
+    public static final int FORMAT_VERSION = 3;
+
+    /** System property naming a profile file to use instead of the bundled one. */
+    public static final String PROFILE_PATH_PROPERTY = "letterfrequency.profiles";
+    private static final String DEFAULT_RESOURCE = "/profiles/languages.lfp";
+
+    private final LanguageProfile[] profiles;
+
+    public LanguageProfiles(List<LanguageProfile> profiles) {
+        this.profiles = new LanguageProfile[Language.values().length];
+        for (LanguageProfile profile : profiles) {
+            this.profiles[profile.getLanguage().ordinal()] = profile;
+        }
+        for (Language language : Language.values()) {
+            if (this.profiles[language.ordinal()] == null) {
+                throw new IllegalArgumentException("No profile for " + language);
+            }
+            if (getNgramTableSize() != this.profiles[language.ordinal()].getNgramLogProbabilities().length) {
+                throw new IllegalArgumentException("N-gram tables differ in size for " + language);
+            }
+        }
+    }
+
+    /**
+     * Size of the hashed n-gram table, the same for every language; 0 if the profiles have none.
+     */
+    public int getNgramTableSize() {
+        return profiles[0].getNgramLogProbabilities().length;
+    }
+
+    public LanguageProfile get(Language language) {
+        return profiles[language.ordinal()];
+    }
+
+    /**
+     * Profiles of every language, in Language.ordinal() order.
+     */
+    public List<LanguageProfile> getAll() {
+        return List.of(profiles);
+    }
+
+    /**
+     * The profiles shared by all services: the file named by the letterfrequency.profiles
+     * system property if set, otherwise the bundled profiles. Loaded once, on first use.
+     */
+    public static LanguageProfiles getDefault() {
+        return DefaultHolder.PROFILES;
+    }
+
+    /**
+     * Load profiles by memory-mapping the file.
+     */
+    public static LanguageProfiles load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Load profiles from a classpath resource, memory-mapped when it is a plain file.
+     */
+    public static LanguageProfiles loadResource(String resource) throws IOException {
+        URL url = LanguageProfiles.class.getResource(resource);
+        if (url == null) {
+            throw new IOException("Language profile resource not found: " + resource);
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return load(Paths.get(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException("Bad language profile location: " + url, e);
+            }
+        }
+        // Inside a jar the resource cannot be mapped, so it is read into memory
+        try (InputStream in = url.openStream()) {
+            return read(ByteBuffer.wrap(in.readAllBytes()));
+        }
+    }
+
+    /**
+     * Read profiles from the buffer, starting at its position.
+     */
+    public static LanguageProfiles read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a language profile file");
+            }
+            int version = buffer.getShort();
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unsupported language profile version " + version
+                    + ", expected 1 to " + FORMAT_VERSION);
+            }
+            int count = buffer.getShort();
+            List<LanguageProfile> profiles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                profiles.add(readProfile(buffer, version));
+            }
+            return new LanguageProfiles(profiles);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated language profile file", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid language profile file: " + e.getMessage(), e);
+        }
+    }
+
+    private static LanguageProfile readProfile(ByteBuffer buffer, int version) {
+        Language language = Language.valueOf(readString(buffer));
+        double expectedIC = buffer.getDouble();
+        double accentedShare = version >= 3 ? buffer.getDouble() : 0.0;
+        double[] letters = readDoubles(buffer, LanguageProfile.ALPHABET_SIZE);
+        double[] bigrams = readDoubles(buffer, LanguageProfile.BIGRAM_COUNT);
+        List<String> stopwords = readStrings(buffer);
+        List<String> commonWords = readStrings(buffer);
+        float[] ngrams = version >= 2 ? readFloats(buffer, buffer.getInt()) : new float[0];
+        if (version < 3) {
+            // Older letter frequencies leave accented letters out, so they are the remainder
+            return new LanguageProfile(language, expectedIC, letters, bigrams, stopwords, commonWords, ngrams);
+        }
+        return new LanguageProfile(language, expectedIC, accentedShare, letters, bigrams, stopwords, commonWords,
+            ngrams);
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return values;
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("negative n-gram table size");
+        }
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * Float.BYTES);
+        return values;
+    }
+
+    private static List<String> readStrings(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IllegalArgumentException("negative word count");
+        }
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(buffer));
+        }
+        return strings;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class DefaultHolder {
+        static final LanguageProfiles PROFILES = loadDefault();
+
+        private static LanguageProfiles loadDefault() {
+            String path = System.getProperty(PROFILE_PATH_PROPERTY);
+            try {
+                return path != null ? load(Paths.get(path)) : loadResource(DEFAULT_RESOURCE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not load language profiles", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.letterfrequency.profile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes profiles in the binary format read by LanguageProfiles.
+ */
+public final class ProfileWriter {
+    private ProfileWriter() {
+    }
+
+    public static void write(LanguageProfiles profiles, Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(profiles, out);
+        }
+    }
+
+    public static void write(LanguageProfiles profiles, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        List<LanguageProfile> all = profiles.getAll();
+        data.writeInt(LanguageProfiles.MAGIC);
+        data.writeShort(LanguageProfiles.FORMAT_VERSION);
+        data.writeShort(all.size());
+        for (LanguageProfile profile : all) {
+            writeString(data, profile.getLanguage().name());
+            data.writeDouble(profile.getExpectedIC());
+            data.writeDouble(profile.getAccentedShare());
+            for (double frequency : profile.getLetterFrequencies()) {
+                data.writeDouble(frequency);
+            }
+            for (double frequency : profile.getBigramFrequencies()) {
+                data.writeDouble(frequency);
+            }
+            writeStrings(data, profile.getStopwords());
+            writeStrings(data, profile.getCommonWords());
+            data.writeInt(profile.getNgramLogProbabilities().length);
+            for (float logProbability : profile.getNgramLogProbabilities()) {
+                data.writeFloat(logProbability);
+            }
+        }
+        data.flush();
+    }
+
+    private static void writeStrings(DataOutputStream data, List<String> strings) throws IOException {
+        data.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(data, string);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long for a language profile: " + bytes.length + " bytes");
+        }
+        data.writeShort(bytes.length);
+        data.write(bytes);
+    }
+}
@@ -0,0 +1,335 @@
+package com.letterfrequency.server;
+
+import com.letterfrequency.metrics.Detector;
+import com.letterfrequency.metrics.DetectorStats;
+import com.letterfrequency.metrics.LatencyHistogram;
+import com.letterfrequency.metrics.MetricsSnapshot;
+import com.letterfrequency.model.Language;
+import com.letterfrequency.service.CombinedLanguageDetectionService;
+import com.letterfrequency.util.Json;
+import com.letterfrequency.util.LimitExceededException;
+import com.letterfrequency.util.VirtualThreads;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP front end of a CombinedLanguageDetectionService, on the JDK's built-in server
+ * with one virtual thread per request (daemon platform threads before Java 21).
+ *
+ * <ul>
+ * <li>POST /detect: the request body is the text; it is streamed into the detectors
+ *     in chunks, never copied into a String.
+ * <li>POST /detect/batch: the body is a JSON array of texts; the response is an
+ *     array of results in the same order. The batch is held in memory, so its size
+ *     in bytes and its number of texts are limited; a larger one is answered with 413.
+ * <li>GET /metrics: per-detector latencies, winning languages and request statistics.
+ * </ul>
+ *
+ * All requests share the one detection service, whose detectors are immutable once
+ * built. At most maxConcurrentRequests requests are served at a time; any more are
+ * answered with 503 straight away, so an overloaded server sheds load instead of
+ * queueing it.
+ */
+public class DetectionServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4 * Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_MAX_BATCH_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_MAX_BATCH_TEXTS = 10_000;
+
+    // Connections waiting to be accepted, 0 for the system default
+    private static final int BACKLOG = 0;
+
+    private final CombinedLanguageDetectionService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long maxBatchBytes;
+    private final int maxBatchTexts;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public DetectionServer(CombinedLanguageDetectionService service, int port) throws IOException {
+        this(service, new InetSocketAddress(port), DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    public DetectionServer(CombinedLanguageDetectionService service, InetSocketAddress address,
+                           int maxConcurrentRequests) throws IOException {
+        this(service, address, maxConcurrentRequests, DEFAULT_MAX_BATCH_BYTES, DEFAULT_MAX_BATCH_TEXTS);
+    }
+
+    /**
+     * @param service Service shared by all requests
+     * @param address Address to listen on; port 0 picks a free port
+     * @param maxConcurrentRequests Requests served at a time before new ones are rejected
+     * @param maxBatchBytes Largest batch request body in bytes
+     * @param maxBatchTexts Most texts in one batch request
+     */
+    public DetectionServer(CombinedLanguageDetectionService service, InetSocketAddress address,
+                           int maxConcurrentRequests, long maxBatchBytes, int maxBatchTexts) throws IOException {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrentRequests);
+        }
+        if (maxBatchBytes <= 0 || maxBatchTexts <= 0) {
+            throw new IllegalArgumentException("Batch limits must be positive: " + maxBatchBytes + " bytes, "
+                + maxBatchTexts + " texts");
+        }
+        this.service = service;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchTexts = maxBatchTexts;
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.executor = VirtualThreads.newExecutor("detection-server");
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/detect", limited("POST", this::detect));
+        server.createContext("/detect/batch", limited("POST", this::detectBatch));
+        // Metrics stay reachable when the detectors are saturated
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", this::metrics));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and wait up to the delay for those in progress.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The address the server listens on, with the actual port if port 0 was requested.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private String detect(HttpExchange exchange) throws IOException {
+        Map<Language, Double> scores = service.getLanguageScores(requestReader(exchange));
+        StringBuilder json = new StringBuilder();
+        appendResult(json, scores);
+        return json.toString();
+    }
+
+    private String detectBatch(HttpExchange exchange) throws IOException {
+        // A declared length over the limit is refused before any of the body is read
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && Long.parseLong(contentLength.trim()) > maxBatchBytes) {
+            throw batchTooLarge();
+        }
+        Reader body = new InputStreamReader(new LimitedInputStream(exchange.getRequestBody(), maxBatchBytes),
+            StandardCharsets.UTF_8);
+        List<String> texts = Json.readStringArray(body, maxBatchTexts);
+        List<Map<Language, Double>> results = service.getLanguageScores(texts);
+        StringBuilder json = new StringBuilder().append('[');
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendResult(json, results.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    private String metrics(HttpExchange exchange) {
+        MetricsSnapshot snapshot = service.getMetrics().snapshot();
+        LatencyHistogram.Snapshot requestLatency = latency.snapshot();
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\"server\":{\"requests\":").append(requests.sum())
+            .append(",\"rejected\":").append(rejected.sum())
+            .append(",\"inFlight\":").append(maxConcurrentRequests - permits.availablePermits())
+            .append(",\"maxConcurrentRequests\":").append(maxConcurrentRequests)
+            .append(",\"p50Nanos\":").append(requestLatency.getValueAtPercentile(50.0))
+            .append(",\"p99Nanos\":").append(requestLatency.getValueAtPercentile(99.0))
+            .append(",\"maxNanos\":").append(requestLatency.getMax())
+            .append("},\"detectors\":{");
+        boolean first = true;
+        for (Map.Entry<Detector, DetectorStats> entry : snapshot.getDetectorStats().entrySet()) {
+            DetectorStats stats = entry.getValue();
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.writeString(json, entry.getKey().getMetricName());
+            json.append(":{\"calls\":").append(stats.getCalls())
+                .append(",\"charsProcessed\":").append(stats.getCharsProcessed())
+                .append(",\"meanNanos\":").append(stats.getMeanNanos())
+                .append(",\"p50Nanos\":").append(stats.getP50Nanos())
+                .append(",\"p90Nanos\":").append(stats.getP90Nanos())
+                .append(",\"p99Nanos\":").append(stats.getP99Nanos())
+                .append(",\"p999Nanos\":").append(stats.getP999Nanos())
+                .append(",\"maxNanos\":").append(stats.getMaxNanos())
+                .append('}');
+        }
+        json.append("},\"winningLanguages\":{");
+        first = true;
+        for (Map.Entry<Language, Long> entry : snapshot.getWinningLanguages().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.writeString(json, entry.getKey().getDisplayName());
+            json.append(':').append(entry.getValue());
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Append {"language": best, "scores": {language: score, ...}}.
+     */
+    private void appendResult(StringBuilder json, Map<Language, Double> scores) {
+        json.append("{\"language\":");
+        Json.writeString(json, service.selectLanguage(scores).getDisplayName());
+        json.append(",\"scores\":{");
+        boolean first = true;
+        for (Map.Entry<Language, Double> entry : scores.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.writeString(json, entry.getKey().getDisplayName());
+            json.append(':');
+            Json.writeNumber(json, entry.getValue());
+        }
+        json.append("}}");
+    }
+
+    /**
+     * The request body decoded as UTF-8, the only charset the endpoints accept.
+     */
+    private static Reader requestReader(HttpExchange exchange) {
+        return new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+    }
+
+    private LimitExceededException batchTooLarge() {
+        return new LimitExceededException("Batch larger than " + maxBatchBytes + " bytes");
+    }
+
+    /**
+     * Wrap an endpoint so it only runs with a permit; without one the request is rejected with 503.
+     */
+    private HttpHandler limited(String method, Endpoint endpoint) {
+        return exchange -> {
+            if (!permits.tryAcquire()) {
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "Too many concurrent requests");
+                return;
+            }
+            try {
+                handle(exchange, method, endpoint);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                sendError(exchange, 404, "Not found");
+            } else if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, "Method not allowed");
+            } else {
+                send(exchange, 200, endpoint.respond(exchange));
+            }
+        } catch (LimitExceededException e) {
+            sendError(exchange, 413, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Detection failed");
+        } finally {
+            exchange.close();
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.writeString(json, message == null ? "" : message);
+        send(exchange, status, json.append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Request body that fails once more than its limit of bytes has been read from it.
+     */
+    private final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws LimitExceededException {
+            remaining -= read;
+            if (remaining < 0) {
+                throw batchTooLarge();
+            }
+        }
+    }
+
+    /**
+     * One endpoint: reads the request and returns the JSON response body.
+     */
+    private interface Endpoint {
+        String respond(HttpExchange exchange) throws IOException;
+    }
+}
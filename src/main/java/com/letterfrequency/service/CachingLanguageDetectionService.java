@@ -0,0 +1,196 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.ContentHash;
+import com.letterfrequency.util.LruCache;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decorator that caches the scores and detected language of another service,
+ * keyed by a 128-bit hash of the text rather than the text itself. Detection and
+ * scoring of the same text share one entry, and concurrent requests for a text
+ * that is not cached yet wait for a single computation instead of each running it.
+ * Every detector sees the text lowercased, so keys fold case the same way and a
+ * String and the TextFeatures extracted from it find the same entry.
+ * Cached score maps are shared between callers and cannot be modified.
+ */
+public class CachingLanguageDetectionService implements LanguageDetectionService {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final LanguageDetectionService delegate;
+    private final LruCache<ContentHash, CachedResult> cache;
+    // Zero when entries never expire
+    private final long timeToLiveNanos;
+    private final ConcurrentHashMap<ContentHash, CompletableFuture<CachedResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CachingLanguageDetectionService(LanguageDetectionService delegate) {
+        this(delegate, DEFAULT_CACHE_SIZE, Duration.ZERO);
+    }
+
+    /**
+     * @param delegate Service that computes the results
+     * @param maxSize Maximum number of cached texts; the least recently used are evicted
+     * @param timeToLive How long an entry stays valid, or zero to keep it until evicted
+     */
+    public CachingLanguageDetectionService(LanguageDetectionService delegate, int maxSize, Duration timeToLive) {
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("Time to live must not be negative: " + timeToLive);
+        }
+        this.delegate = delegate;
+        this.cache = new LruCache<>(maxSize);
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    @Override
+    public Language detectLanguage(String text) {
+        return lookup(ContentHash.ofLowerCase(text), () -> delegate.getLanguageScores(text)).language;
+    }
+
+    @Override
+    public Map<Language, Double> getLanguageScores(String text) {
+        return lookup(ContentHash.ofLowerCase(text), () -> delegate.getLanguageScores(text)).scores;
+    }
+
+    @Override
+    public Map<Language, Double> getLanguageScores(TextFeatures features) {
+        ContentHash key = ContentHash.of(features.chars(), 0, features.getLength());
+        return lookup(key, () -> delegate.getLanguageScores(features)).scores;
+    }
+
+    @Override
+    public Language selectLanguage(Map<Language, Double> scores) {
+        return delegate.selectLanguage(scores);
+    }
+
+    /**
+     * Score every text through the cache, one after another. Results are in input order.
+     */
+    @Override
+    public List<Map<Language, Double>> getLanguageScores(List<? extends CharSequence> texts) {
+        List<Map<Language, Double>> scores = new ArrayList<>(texts.size());
+        for (CharSequence text : texts) {
+            scores.add(getLanguageScores(text.toString()));
+        }
+        return scores;
+    }
+
+    private CachedResult lookup(ContentHash key, Supplier<Map<Language, Double>> compute) {
+        CachedResult cached = getValid(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<CachedResult> computation = new CompletableFuture<>();
+        CompletableFuture<CachedResult> running = inFlight.putIfAbsent(key, computation);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+        try {
+            // Another thread may have stored the entry between the miss and claiming the key
+            cached = getValid(key);
+            if (cached == null) {
+                misses.increment();
+                Map<Language, Double> scores = compute.get();
+                long expiresAt = timeToLiveNanos == 0 ? 0 : System.nanoTime() + timeToLiveNanos;
+                cached = new CachedResult(Collections.unmodifiableMap(scores), delegate.selectLanguage(scores), expiresAt);
+                cache.put(key, cached);
+            } else {
+                hits.increment();
+            }
+            computation.complete(cached);
+            return cached;
+        } catch (RuntimeException | Error e) {
+            computation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, computation);
+        }
+    }
+
+    private CachedResult getValid(ContentHash key) {
+        CachedResult cached = cache.get(key);
+        if (cached != null && cached.expiresAt != 0 && System.nanoTime() - cached.expiresAt >= 0) {
+            cache.remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private static CachedResult join(CompletableFuture<CachedResult> computation) {
+        try {
+            return computation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Requests that waited for a computation another thread had already started.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Share of requests answered without computing, counting coalesced requests as hits.
+     */
+    public double getHitRatio() {
+        long saved = hits.sum() + coalesced.sum();
+        long total = saved + misses.sum();
+        return total == 0 ? 0.0 : (double) saved / total;
+    }
+
+    public LanguageDetectionService getDelegate() {
+        return delegate;
+    }
+
+    private static final class CachedResult {
+        private final Map<Language, Double> scores;
+        private final Language language;
+        // System.nanoTime() at which the entry expires, 0 if it never does
+        private final long expiresAt;
+
+        CachedResult(Map<Language, Double> scores, Language language, long expiresAt) {
+            this.scores = scores;
+            this.language = language;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.EditDistance;
+import com.letterfrequency.util.Tokenizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Symmetric-delete (SymSpell-style) index over the common words of every language.
+ * Every vocabulary word is stored under all the strings obtained by deleting up to
+ * maxDistance characters from it. A lookup generates the deletes of the input word,
+ * collects the vocabulary words sharing one of them and verifies each with the
+ * bounded Levenshtein kernel, so its cost depends on the word length and not on
+ * the vocabulary size.
+ */
+final class CommonWordIndex {
+    static final int DEFAULT_MAX_DISTANCE = 2;
+    // Only the first characters of long words produce deletes, which bounds the index size
+    private static final int PREFIX_LENGTH = 7;
+
+    private final int maxDistance;
+    private final EditDistance.Pattern[] words;
+    // Bitmask of the languages having each word, bit i for Language.ordinal() == i
+    private final int[] languageMasks;
+    private final Map<String, int[]> deletes;
+    private final int maxWordLength;
+
+    CommonWordIndex(Map<Language, ? extends Collection<String>> commonWords, int maxDistance) {
+        this.maxDistance = maxDistance;
+
+        // Merge the vocabularies first; sorted for a deterministic layout
+        Map<String, Integer> merged = new TreeMap<>();
+        for (Map.Entry<Language, ? extends Collection<String>> entry : commonWords.entrySet()) {
+            int bit = 1 << entry.getKey().ordinal();
+            for (String word : entry.getValue()) {
+                merged.merge(Tokenizer.fold(word), bit, (a, b) -> a | b);
+            }
+        }
+
+        this.words = new EditDistance.Pattern[merged.size()];
+        this.languageMasks = new int[merged.size()];
+        Map<String, List<Integer>> deleteLists = new HashMap<>();
+        int id = 0;
+        for (Map.Entry<String, Integer> entry : merged.entrySet()) {
+            words[id] = EditDistance.compile(entry.getKey());
+            languageMasks[id] = entry.getValue();
+            for (String delete : generateDeletes(entry.getKey())) {
+                deleteLists.computeIfAbsent(delete, key -> new ArrayList<>()).add(id);
+            }
+            id++;
+        }
+
+        this.maxWordLength = merged.keySet().stream().mapToInt(String::length).max().orElse(0);
+        this.deletes = new HashMap<>(deleteLists.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : deleteLists.entrySet()) {
+            deletes.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    int getMaxDistance() {
+        return maxDistance;
+    }
+
+    int size() {
+        return words.length;
+    }
+
+    /**
+     * Longest input that can still be within maxDistance of a vocabulary word.
+     */
+    int getMaxMatchLength() {
+        return maxWordLength + maxDistance;
+    }
+
+    /**
+     * Find the best similarity per language among the vocabulary words within maxDistance
+     * of chars[offset, offset + length). Similarity is 1 - distance / longer length.
+     *
+     * @param similarities Output array indexed by Language.ordinal(), -1 where no word is close enough
+     * @return true if at least one language has a word within maxDistance
+     */
+    boolean findBestSimilarities(char[] chars, int offset, int length, double[] similarities) {
+        Arrays.fill(similarities, -1.0);
+        if (length > getMaxMatchLength()) {
+            return false;
+        }
+        boolean found = false;
+        Set<Integer> verified = new HashSet<>();
+
+        for (String delete : generateDeletes(new String(chars, offset, length))) {
+            int[] candidates = deletes.get(delete);
+            if (candidates == null) {
+                continue;
+            }
+            for (int candidate : candidates) {
+                if (!verified.add(candidate)) {
+                    continue;
+                }
+                EditDistance.Pattern word = words[candidate];
+                int distance = word.distance(chars, offset, length, maxDistance);
+                if (distance > maxDistance) {
+                    continue;
+                }
+                int maxLength = Math.max(length, word.length());
+                double similarity = maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
+                for (int mask = languageMasks[candidate]; mask != 0; mask &= mask - 1) {
+                    int lang = Integer.numberOfTrailingZeros(mask);
+                    similarities[lang] = Math.max(similarities[lang], similarity);
+                }
+                found = true;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * The word's prefix and every string obtained by deleting up to maxDistance characters from it.
+     */
+    private Set<String> generateDeletes(String word) {
+        Set<String> result = new HashSet<>();
+        String prefix = word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+        result.add(prefix);
+        addDeletes(prefix, maxDistance, result);
+        return result;
+    }
+
+    private static void addDeletes(String word, int remaining, Set<String> result) {
+        if (remaining == 0 || word.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            String delete = word.substring(0, i) + word.substring(i + 1);
+            // Already expanded from another path if it was seen before
+            if (result.add(delete)) {
+                addDeletes(delete, remaining - 1, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.model.LanguageFrequencyAnalyzer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Language analysis of large UTF-8 files. Each file is memory-mapped in chunks that
+ * end on whitespace, every chunk is decoded and counted on its own fork-join task,
+ * and the partial counts are merged in file order. The scores go through the same
+ * weighting as CombinedLanguageDetectionService and equal those of reading the
+ * file as one text; totals are longs, so files of any size can be analyzed.
+ */
+public class CorpusAnalysisService {
+    // Target size of a mapped chunk; a chunk is extended to the next whitespace byte
+    private static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    private final CombinedLanguageDetectionService languageService;
+    private final int chunkSize;
+
+    public CorpusAnalysisService(CombinedLanguageDetectionService languageService) {
+        this(languageService, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param languageService Service whose detectors and weighting are used
+     * @param chunkSize Target number of bytes per chunk
+     */
+    public CorpusAnalysisService(CombinedLanguageDetectionService languageService, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.languageService = languageService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Analyze one file on the common fork-join pool.
+     */
+    public CorpusAnalysis analyze(Path file) throws IOException {
+        return analyze(Collections.singletonList(file), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Analyze several files as one corpus on the common fork-join pool.
+     */
+    public CorpusAnalysis analyze(List<Path> files) throws IOException {
+        return analyze(files, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Analyze several files as one corpus on the given pool. The files are counted
+     * in parallel as separate texts: no word or bigram spans two of them.
+     */
+    public CorpusAnalysis analyze(List<Path> files, ForkJoinPool pool) throws IOException {
+        StreamingFeatures total = languageService.newStreamingFeatures();
+        List<ForkJoinTask<StreamingFeatures>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            List<TextChunk> chunks = TextChunk.split(file, chunkSize);
+            if (!chunks.isEmpty()) {
+                tasks.add(pool.submit(new ChunkTask(chunks, 0, chunks.size())));
+            }
+        }
+        try {
+            for (ForkJoinTask<StreamingFeatures> task : tasks) {
+                total.add(task.join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new CorpusAnalysis(languageService.getLanguageScores(total), total);
+    }
+
+    private StreamingFeatures countChunk(TextChunk chunk) {
+        StreamingFeatures features = languageService.newStreamingFeatures();
+        try {
+            chunk.decode(features::accept);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        features.finish();
+        return features;
+    }
+
+    /**
+     * Count a range of consecutive chunks of one file, splitting it in halves and
+     * merging the halves in order.
+     */
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveTask<StreamingFeatures> {
+        private final List<TextChunk> chunks;
+        private final int start;
+        private final int end;
+
+        ChunkTask(List<TextChunk> chunks, int start, int end) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected StreamingFeatures compute() {
+            if (end - start == 1) {
+                return countChunk(chunks.get(start));
+            }
+            int middle = (start + end) >>> 1;
+            ChunkTask right = new ChunkTask(chunks, middle, end);
+            right.fork();
+            StreamingFeatures features = new ChunkTask(chunks, start, middle).compute();
+            StreamingFeatures next = right.join();
+            features.merge(next);
+            return features;
+        }
+    }
+
+    /**
+     * Result of a corpus analysis.
+     */
+    public static class CorpusAnalysis {
+        private final Map<Language, Double> scores;
+        private final Map<Character, Long> letterCounts;
+        private final long letterTotal;
+        private final long charCount;
+
+        CorpusAnalysis(Map<Language, Double> scores, StreamingFeatures features) {
+            this.scores = scores;
+            this.letterCounts = new HashMap<>();
+            long[] counts = features.letterCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    letterCounts.put((char) ('a' + i), counts[i]);
+                }
+            }
+            this.letterTotal = features.getLetterTotal();
+            this.charCount = features.getCharCount();
+        }
+
+        /**
+         * Combined language scores, higher is better.
+         */
+        public Map<Language, Double> getScores() {
+            return scores;
+        }
+
+        public Language getBestLanguage() {
+            return scores.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(Language.ENGLISH);
+        }
+
+        /**
+         * Count of each a-z letter that occurs in the corpus.
+         */
+        public Map<Character, Long> getLetterCounts() {
+            return letterCounts;
+        }
+
+        /**
+         * Percentage of each a-z letter among all a-z letters, rounded to three decimals.
+         */
+        public Map<Character, Double> getPercentages() {
+            return LanguageFrequencyAnalyzer.calculatePercentages(letterCounts, letterTotal);
+        }
+
+        public long getLetterTotal() {
+            return letterTotal;
+        }
+
+        /**
+         * Number of decoded characters in the corpus.
+         */
+        public long getCharCount() {
+            return charCount;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.metrics.Detector;
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.WordKey;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Reusable scratch buffers for one detection at a time: the text features, the
+ * per-detector counts and score arrays, and the result of the last call. The
+ * detectors score into these primitive arrays, so once the buffers have grown to
+ * the size of the texts and the closest matches of their words are cached, a call
+ * of CombinedLanguageDetectionService with a context allocates nothing.
+ *
+ * <p>A context is not thread-safe. Each thread keeps its own, from
+ * forCurrentThread() or by creating one, and reads the result before the next call.
+ * A context keeps buffers as large as the longest text scanned into it, so a text
+ * longer than MAX_RETAINED_LENGTH gets a context of its own from forText() instead
+ * of the thread's, and long-lived threads do not hold on to the largest input seen.
+ */
+public final class DetectionContext {
+    private static final Language[] LANGUAGES = Language.values();
+
+    // Longest text scanned into the context of a thread; longer ones get a new context
+    static final int MAX_RETAINED_LENGTH = 1 << 16;
+
+    private static final ThreadLocal<DetectionContext> PER_THREAD = ThreadLocal.withInitial(DetectionContext::new);
+
+    final TextFeatures features = new TextFeatures();
+
+    // Detector inputs, indexed by Language.ordinal()
+    final double[] distances = new double[LANGUAGES.length];
+    final int[] stopwordCounts = new int[LANGUAGES.length];
+    final int[] levenshteinMatches = new int[LANGUAGES.length];
+    final double[] logLikelihoods = new double[LANGUAGES.length];
+    final WordKey probe = new WordKey();
+
+    // Scores indexed by Detector.ordinal(), then Language.ordinal(); frequency scores are normalized
+    final double[][] scores = new double[Detector.values().length][LANGUAGES.length];
+
+    Language language = Language.ENGLISH;
+
+    public DetectionContext() {
+    }
+
+    /**
+     * The context of the calling thread, created on first use.
+     */
+    public static DetectionContext forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * A context to scan the text into: the calling thread's, or a new one if the text
+     * is longer than MAX_RETAINED_LENGTH.
+     */
+    static DetectionContext forText(CharSequence text) {
+        return text.length() > MAX_RETAINED_LENGTH ? new DetectionContext() : PER_THREAD.get();
+    }
+
+    /**
+     * Features of the last text scanned into this context, valid until the next call.
+     */
+    public TextFeatures getFeatures() {
+        return features;
+    }
+
+    /**
+     * Best language of the last call, ties going to the first language.
+     */
+    public Language getLanguage() {
+        return language;
+    }
+
+    /**
+     * Combined score of the language in the last call.
+     */
+    public double getScore(Language language) {
+        return scores[Detector.COMBINED.ordinal()][language.ordinal()];
+    }
+
+    /**
+     * Score of the language by one detector in the last call. Frequency scores are
+     * normalized as for weighting, so a higher score is better for every detector.
+     */
+    public double getScore(Detector detector, Language language) {
+        return scores[detector.ordinal()][language.ordinal()];
+    }
+
+    /**
+     * Stopwords of the language matched in the last call, or 0 if the stopword
+     * detector had no weight.
+     */
+    public int getStopwordMatches(Language language) {
+        return stopwordCounts[language.ordinal()];
+    }
+    
+    /**
+     * Copy of the combined scores of the last call.
+     */
+    public Map<Language, Double> getScores() {
+        return getScores(Detector.COMBINED);
+    }
+
+    /**
+     * Copy of one detector's scores of the last call.
+     */
+    public Map<Language, Double> getScores(Detector detector) {
+        double[] detectorScores = scores[detector.ordinal()];
+        Map<Language, Double> result = new EnumMap<>(Language.class);
+        for (Language lang : LANGUAGES) {
+            result.put(lang, detectorScores[lang.ordinal()]);
+        }
+        return result;
+    }
+}
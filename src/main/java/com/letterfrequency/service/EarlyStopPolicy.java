@@ -0,0 +1,59 @@
+package com.letterfrequency.service;
+
+/**
+ * When to stop reading a long input because the language is already clear.
+ * The input is scored after every increment. Detection stops once the leader of
+ * the combined scores also wins a sequential probability ratio test (SPRT) against
+ * the runner-up: the log-likelihood ratio of the letters read so far under the two
+ * languages' letter frequencies must reach log((1 - errorRate) / errorRate).
+ * Letters are not really independent, so the ratio grows faster than the evidence
+ * does; minChars and a small errorRate keep short, ambiguous prefixes from deciding.
+ */
+public final class EarlyStopPolicy {
+    public static final EarlyStopPolicy DEFAULT = new EarlyStopPolicy(1024, 2048, 1e-6);
+
+    private final int incrementSize;
+    private final int minChars;
+    private final double errorRate;
+    private final double threshold;
+
+    /**
+     * @param incrementSize Characters read between two checks
+     * @param minChars Characters to read before the first check
+     * @param errorRate Accepted probability of stopping on the wrong language, between 0 and 0.5
+     */
+    public EarlyStopPolicy(int incrementSize, int minChars, double errorRate) {
+        if (incrementSize <= 0) {
+            throw new IllegalArgumentException("Increment size must be positive: " + incrementSize);
+        }
+        if (minChars < 0) {
+            throw new IllegalArgumentException("Minimum characters must not be negative: " + minChars);
+        }
+        if (!(errorRate > 0.0 && errorRate < 0.5)) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 0.5: " + errorRate);
+        }
+        this.incrementSize = incrementSize;
+        this.minChars = minChars;
+        this.errorRate = errorRate;
+        this.threshold = Math.log((1.0 - errorRate) / errorRate);
+    }
+
+    public int getIncrementSize() {
+        return incrementSize;
+    }
+
+    public int getMinChars() {
+        return minChars;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Log-likelihood ratio the leader must reach over the runner-up.
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+}
@@ -0,0 +1,110 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.profile.LanguageProfiles;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Language detection service based on a hashed character 1-4-gram model.
+ * Every n-gram of the text adds the log-probability of its hash bucket for each
+ * language to a running sum, in one pass over the text and without allocating.
+ * Unlike the bigram service it covers every n-gram up to length four, including
+ * accented letters and word boundaries, which helps most on short texts.
+ */
+public class HashedNgramAnalysisService implements LanguageDetectionService {
+    private static final Language[] LANGUAGES = Language.values();
+
+    private final HashedNgramModel model;
+
+    public HashedNgramAnalysisService() {
+        this(LanguageProfiles.getDefault());
+    }
+
+    /**
+     * @param profiles Profiles holding the n-gram tables; without tables every score is 0
+     */
+    public HashedNgramAnalysisService(LanguageProfiles profiles) {
+        this.model = new HashedNgramModel(profiles);
+    }
+
+    @Override
+    public Language detectLanguage(String text) {
+        TextFeatures features = TextFeatures.extract(text);
+        double[] logLikelihoods = new double[LANGUAGES.length];
+        model.score(features.chars(), 0, features.getLength(), logLikelihoods);
+
+        int best = 0;
+        for (int i = 1; i < logLikelihoods.length; i++) {
+            if (logLikelihoods[i] > logLikelihoods[best]) {
+                best = i;
+            }
+        }
+        return LANGUAGES[best];
+    }
+
+    @Override
+    public Map<Language, Double> getLanguageScores(TextFeatures features) {
+        double[] logLikelihoods = new double[LANGUAGES.length];
+        long ngrams = calculateLogLikelihoods(features, logLikelihoods);
+        return getLanguageScores(logLikelihoods, ngrams);
+    }
+
+    /**
+     * Sum the log-probabilities of every n-gram of the text per language.
+     *
+     * @param logLikelihoods Output array indexed by Language.ordinal(), overwritten
+     * @return Number of n-grams scored
+     */
+    public long calculateLogLikelihoods(TextFeatures features, double[] logLikelihoods) {
+        Arrays.fill(logLikelihoods, 0.0);
+        return model.score(features.chars(), 0, features.getLength(), logLikelihoods);
+    }
+
+    /**
+     * Turn log-likelihood sums into scores between 0 and 1: the likelihood of each
+     * language relative to the best one, per n-gram, so the best language scores 1
+     * and the scores do not collapse to 0 and 1 as texts get longer.
+     *
+     * @param logLikelihoods Log-likelihood per language, indexed by Language.ordinal()
+     * @param ngrams Number of n-grams summed
+     */
+    public Map<Language, Double> getLanguageScores(double[] logLikelihoods, long ngrams) {
+        double[] relative = new double[LANGUAGES.length];
+        calculateScores(logLikelihoods, ngrams, relative);
+
+        Map<Language, Double> scores = new EnumMap<>(Language.class);
+        for (Language lang : LANGUAGES) {
+            scores.put(lang, relative[lang.ordinal()]);
+        }
+        return scores;
+    }
+
+    /**
+     * Array form of getLanguageScores(double[], long).
+     *
+     * @param scores Output array indexed by Language.ordinal()
+     */
+    public void calculateScores(double[] logLikelihoods, long ngrams, double[] scores) {
+        double best = Double.NEGATIVE_INFINITY;
+        for (double logLikelihood : logLikelihoods) {
+            best = Math.max(best, logLikelihood);
+        }
+
+        for (int lang = 0; lang < logLikelihoods.length; lang++) {
+            scores[lang] = ngrams == 0 ? 0.0 : Math.exp((logLikelihoods[lang] - best) / ngrams);
+        }
+    }
+
+    /**
+     * Whether the profiles provide an n-gram table.
+     */
+    public boolean hasModel() {
+        return !model.isEmpty();
+    }
+
+    HashedNgramModel getModel() {
+        return model;
+    }
+}
@@ -0,0 +1,212 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.profile.LanguageProfiles;
+import com.letterfrequency.util.Tokenizer;
+
+/**
+ * Character 1-4-gram model with feature hashing. Every n-gram is hashed into a table
+ * of 2^k buckets holding one float log-probability per language, so a text is scored
+ * by summing table entries, without building or looking up n-gram strings.
+ *
+ * <p>N-grams are taken within words, runs of letters of any alphabet padded with a
+ * space on both sides, so "the" yields t, h, e, " t", th, he, "e ", " th", the,
+ * "he ", " the" and "the ". As no n-gram crosses whitespace, texts split at
+ * whitespace can be scored in parts and the sums added.
+ *
+ * <p>The n-gram in progress is kept as up to four 16-bit chars packed in a long,
+ * the newest in the low bits, which is also the key that gets hashed.
+ */
+final class HashedNgramModel {
+    static final int MAX_ORDER = 4;
+    static final char BOUNDARY = ' ';
+
+    // Additive smoothing for buckets never seen in training
+    private static final double SMOOTHING = 0.5;
+
+    private final int languageCount;
+    // Log-probabilities interleaved by bucket: table[bucket * languageCount + language]
+    private final float[] table;
+    private final int shift;
+
+    HashedNgramModel(LanguageProfiles profiles) {
+        Language[] languages = Language.values();
+        int size = profiles.getNgramTableSize();
+        this.languageCount = languages.length;
+        this.table = new float[size * languageCount];
+        for (Language language : languages) {
+            float[] logProbabilities = profiles.get(language).getNgramLogProbabilities();
+            for (int bucket = 0; bucket < size; bucket++) {
+                table[bucket * languageCount + language.ordinal()] = logProbabilities[bucket];
+            }
+        }
+        this.shift = size == 0 ? 0 : Long.SIZE - Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Whether the profiles came without an n-gram table, in which case nothing is scored.
+     */
+    boolean isEmpty() {
+        return table.length == 0;
+    }
+
+    /**
+     * Add the log-probabilities of every n-gram of chars[offset, offset + length) to sums.
+     * The chars must already be lowercased.
+     *
+     * @param sums Log-likelihood per language, indexed by Language.ordinal()
+     * @return Number of n-grams scored
+     */
+    int score(char[] chars, int offset, int length, double[] sums) {
+        long context = 0;
+        int contextLength = 0;
+        int count = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (Tokenizer.isLetter(c)) {
+                if (contextLength == 0) {
+                    context = BOUNDARY;
+                    contextLength = 1;
+                }
+                context = extend(context, c);
+                contextLength = Math.min(contextLength + 1, MAX_ORDER);
+                count += add(context, contextLength, 1, sums);
+            } else if (contextLength > 0) {
+                count += add(extend(context, BOUNDARY), Math.min(contextLength + 1, MAX_ORDER), 2, sums);
+                contextLength = 0;
+            }
+        }
+        if (contextLength > 0) {
+            count += add(extend(context, BOUNDARY), Math.min(contextLength + 1, MAX_ORDER), 2, sums);
+        }
+        return count;
+    }
+
+    static long extend(long context, char c) {
+        return context << Character.SIZE | c;
+    }
+
+    /**
+     * Add the n-grams of order minOrder to contextLength that end with the newest char of the context.
+     *
+     * @return Number of n-grams added
+     */
+    int add(long context, int contextLength, int minOrder, double[] sums) {
+        if (table.length == 0) {
+            return 0;
+        }
+        for (int order = minOrder; order <= contextLength; order++) {
+            int base = bucket(context, order) * languageCount;
+            for (int lang = 0; lang < languageCount; lang++) {
+                sums[lang] += table[base + lang];
+            }
+        }
+        return Math.max(0, contextLength - minOrder + 1);
+    }
+
+    private int bucket(long context, int order) {
+        return bucket(context, order, shift);
+    }
+
+    /**
+     * Hash the newest order chars of the context; the top bits of the hash select the bucket.
+     */
+    private static int bucket(long context, int order, int shift) {
+        long key = order == MAX_ORDER ? context : context & ((1L << (Character.SIZE * order)) - 1);
+        return (int) (mix(key) >>> shift);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Counts the n-grams of training text into the buckets of a new table, walking the
+     * text as score() does. Text is fed one lowercased char at a time, so it can arrive
+     * in any number of buffers; counters over separate texts can be merged.
+     */
+    static final class Counter {
+        private final long[] counts;
+        private final int shift;
+        private long total;
+        private long context;
+        private int contextLength;
+
+        /**
+         * @param tableBits Base-2 logarithm of the table size
+         */
+        Counter(int tableBits) {
+            if (tableBits < 1 || tableBits > 30) {
+                throw new IllegalArgumentException("Table bits must be between 1 and 30: " + tableBits);
+            }
+            this.counts = new long[1 << tableBits];
+            this.shift = Long.SIZE - tableBits;
+        }
+
+        void accept(char c) {
+            if (Tokenizer.isLetter(c)) {
+                if (contextLength == 0) {
+                    context = BOUNDARY;
+                    contextLength = 1;
+                }
+                context = extend(context, c);
+                contextLength = Math.min(contextLength + 1, MAX_ORDER);
+                count(context, contextLength, 1);
+            } else {
+                finish();
+            }
+        }
+
+        /**
+         * Count the n-grams that end with the boundary after the word in progress.
+         */
+        void finish() {
+            if (contextLength > 0) {
+                count(extend(context, BOUNDARY), Math.min(contextLength + 1, MAX_ORDER), 2);
+                contextLength = 0;
+            }
+        }
+
+        private void count(long context, int contextLength, int minOrder) {
+            for (int order = minOrder; order <= contextLength; order++) {
+                counts[bucket(context, order, shift)]++;
+            }
+            total += contextLength - minOrder + 1;
+        }
+
+        /**
+         * Add the counts of another finished counter with the same table size.
+         */
+        void merge(Counter other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+        }
+
+        long getTotal() {
+            return total;
+        }
+
+        /**
+         * Log-probability of each bucket. Counts are smoothed over all buckets,
+         * so unseen n-grams keep a finite cost.
+         */
+        float[] toLogProbabilities() {
+            float[] logProbabilities = new float[counts.length];
+            double denominator = total + SMOOTHING * counts.length;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                logProbabilities[bucket] = (float) Math.log((counts[bucket] + SMOOTHING) / denominator);
+            }
+            return logProbabilities;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.letterfrequency.service;
+
+/**
+ * Fixed-size set of bit positions that finds the nearest set bit before or after a
+ * position without scanning the bits in between. Above the bitmap are summary levels,
+ * each with one bit per word of the level below that is set when that word is nonzero,
+ * up to a level of a single word. Setting and clearing a bit, and finding the nearest
+ * set bit, take time proportional to the number of levels, log base 64 of the size.
+ * Ranges of bits are cleared and copied a word at a time.
+ */
+final class HierarchicalBitSet {
+    // levels[0] holds the bits themselves; the last level is a single word
+    private final long[][] levels;
+    private final int size;
+
+    HierarchicalBitSet(int size) {
+        int depth = 1;
+        for (int words = wordCount(size); words > 1; words = wordCount(words)) {
+            depth++;
+        }
+        this.levels = new long[depth][];
+        int bits = size;
+        for (int level = 0; level < depth; level++) {
+            levels[level] = new long[Math.max(1, wordCount(bits))];
+            bits = levels[level].length;
+        }
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void set(int index) {
+        for (long[] level : levels) {
+            int word = index >>> 6;
+            long bits = level[word];
+            level[word] = bits | 1L << index;
+            if (bits != 0) {
+                // The summaries above already mark this word
+                return;
+            }
+            index = word;
+        }
+    }
+
+    void clear(int index) {
+        for (long[] level : levels) {
+            int word = index >>> 6;
+            long bits = level[word] & ~(1L << index);
+            level[word] = bits;
+            if (bits != 0) {
+                return;
+            }
+            index = word;
+        }
+    }
+
+    /**
+     * Clear the bits from start up to end, exclusive.
+     */
+    void clear(int start, int end) {
+        for (int i = start; i < end; i += 64) {
+            putBits(i, 0L, Math.min(64, end - i));
+        }
+        updateSummaries(start, end);
+    }
+
+    /**
+     * Copy count bits from one position to another, as System.arraycopy does for
+     * arrays; the ranges may overlap.
+     */
+    void copy(int from, int to, int count) {
+        if (to < from) {
+            for (int i = 0; i < count; i += 64) {
+                putBits(to + i, bitsAt(from + i), Math.min(64, count - i));
+            }
+        } else {
+            for (int end = count; end > 0; end -= 64) {
+                int start = Math.max(0, end - 64);
+                putBits(to + start, bitsAt(from + start), end - start);
+            }
+        }
+        updateSummaries(to, to + count);
+    }
+
+    /**
+     * The highest set bit at or below index, or -1 if there is none.
+     */
+    int previousSetBit(int index) {
+        return previousSetBit(0, Math.min(index, size - 1));
+    }
+
+    /**
+     * The lowest set bit at or above index, or -1 if there is none.
+     */
+    int nextSetBit(int index) {
+        return index >= size ? -1 : nextSetBit(0, Math.max(index, 0));
+    }
+
+    private int previousSetBit(int level, int index) {
+        if (index < 0) {
+            return -1;
+        }
+        int word = index >>> 6;
+        long bits = levels[level][word] & (-1L >>> (63 - (index & 63)));
+        if (bits == 0) {
+            if (level + 1 == levels.length) {
+                return -1;
+            }
+            word = previousSetBit(level + 1, word - 1);
+            if (word < 0) {
+                return -1;
+            }
+            bits = levels[level][word];
+        }
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    private int nextSetBit(int level, int index) {
+        int word = index >>> 6;
+        if (word >= levels[level].length) {
+            return -1;
+        }
+        long bits = levels[level][word] & (-1L << index);
+        if (bits == 0) {
+            if (level + 1 == levels.length) {
+                return -1;
+            }
+            word = nextSetBit(level + 1, word + 1);
+            if (word < 0) {
+                return -1;
+            }
+            bits = levels[level][word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * The 64 bits from index on, as the low bits of the result; bits past the end are 0.
+     */
+    private long bitsAt(int index) {
+        long[] bits = levels[0];
+        int word = index >>> 6;
+        int shift = index & 63;
+        long value = bits[word] >>> shift;
+        if (shift != 0 && word + 1 < bits.length) {
+            value |= bits[word + 1] << (64 - shift);
+        }
+        return value;
+    }
+
+    /**
+     * Replace the count bits from index on, 1 to 64, with the low bits of value,
+     * leaving the summaries to be updated.
+     */
+    private void putBits(int index, long value, int count) {
+        long[] bits = levels[0];
+        int word = index >>> 6;
+        int shift = index & 63;
+        long mask = count == 64 ? -1L : (1L << count) - 1;
+        value &= mask;
+        bits[word] = bits[word] & ~(mask << shift) | value << shift;
+        if (shift + count > 64) {
+            bits[word + 1] = bits[word + 1] & ~(mask >>> (64 - shift)) | value >>> (64 - shift);
+        }
+    }
+
+    /**
+     * Bring the summary bits over the words of the bits from start up to end in line
+     * with those words.
+     */
+    private void updateSummaries(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        int first = start >>> 6;
+        int last = (end - 1) >>> 6;
+        for (int level = 1; level < levels.length; level++) {
+            long[] below = levels[level - 1];
+            long[] summary = levels[level];
+            for (int word = first; word <= last; word++) {
+                if (below[word] != 0) {
+                    summary[word >>> 6] |= 1L << word;
+                } else {
+                    summary[word >>> 6] &= ~(1L << word);
+                }
+            }
+            first >>>= 6;
+            last >>>= 6;
+        }
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+}
@@ -0,0 +1,484 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.Tokenizer;
+import com.letterfrequency.util.WordKey;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Language detection of a text that is edited in place, as in an editor, without
+ * rescanning the text on every keystroke. The detector keeps the text and all the
+ * counts the combined detectors score from, and updates both on every insert and
+ * delete.
+ *
+ * <p>An edit can only change the counts of the whitespace-delimited token it touches,
+ * so the counts of that region are taken out, the text is changed, and the counts of
+ * the changed region are put back: its letters, the chain of bigrams from the last
+ * letter before it to the first letter after it, its words, tokens and letter runs.
+ * The region reaches at most a few dozen characters past either end of the edit. A
+ * token longer than that is too long to match a stopword or common word before and
+ * after the edit, and n-grams that far away do not see the edit, so what lies beyond
+ * counts the same both times and cancels out. The text is held in a gap buffer, so
+ * typing at one place moves no text, and the buffer slots holding a letter are
+ * indexed, so the letters next to the region are found without scanning. An edit
+ * therefore costs time proportional to its length, not to the length of the document
+ * or of the token or run of non-letters it falls in.
+ *
+ * <p>Beyond the counts, the detector keeps the sums the scores are made of: the
+ * numerator of the index of coincidence, the sums of the squared letter and bigram
+ * counts, and each language's dot products with them. Scoring then takes time
+ * proportional to the number of languages. The scores are those of
+ * CombinedLanguageDetectionService for the whole text, up to rounding.
+ *
+ * <p>A detector is not thread-safe.
+ */
+public final class IncrementalDetector {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final CombinedLanguageDetectionService service;
+    private final FrequencyAnalysisService frequencyService;
+    private final NgramAnalysisService ngramService;
+    private final StopwordAnalysisService stopwordService;
+    private final LevenshteinAnalysisService levenshteinService;
+    private final HashedNgramModel ngramModel;
+
+    // The text is text[0, gapStart) followed by text[gapEnd, text.length)
+    private char[] text = new char[INITIAL_CAPACITY];
+    private int gapStart;
+    private int gapEnd = INITIAL_CAPACITY;
+    // Buffer slots that hold a word letter; the gap holds none
+    private HierarchicalBitSet letterSlots = new HierarchicalBitSet(INITIAL_CAPACITY);
+    // How far from an edit the token around it is rescanned, past the longest stopword,
+    // common word and n-gram
+    private final int scanLimit;
+
+    private final long[] letterCounts = new long[TextFeatures.ALPHABET_SIZE];
+    private final long[] bigramCounts = new long[TextFeatures.BIGRAM_COUNT];
+    private long letterTotal;
+    private long alphabeticTotal;
+    private long accentedTotal;
+    // Σ n(n - 1) over the letter counts, the numerator of the index of coincidence
+    private long coincidences;
+    private long letterSquares;
+    private long bigramSquares;
+    private final double[] letterDotProducts;
+    private final double[] bigramDotProducts;
+    private final int[] stopwordCounts;
+    private final int[] levenshteinMatches;
+    // Table entries are floats, so as in StreamingFeatures these sums are exact
+    private final double[] ngramLogLikelihoods;
+    private long ngramCount;
+
+    // The region being counted, raw and folded, and the sign its counts are added with
+    private char[] region = new char[64];
+    private char[] foldedRegion = new char[64];
+    private CharBuffer regionView = CharBuffer.wrap(region);
+    private int sign;
+    private final double[] runLogLikelihoods;
+    private final WordKey probe = new WordKey();
+    private final Tokenizer.SpanSink spans = new Tokenizer.SpanSink() {
+        @Override
+        public void word(int offset, int length) {
+            if (length <= stopwordService.getMaxWordLength()) {
+                int mask = stopwordService.matchMask(foldedRegion, offset, length);
+                while (mask != 0) {
+                    stopwordCounts[Integer.numberOfTrailingZeros(mask)] += sign;
+                    mask &= mask - 1;
+                }
+            }
+        }
+
+        @Override
+        public void token(int offset, int length) {
+            if (length >= 3 && length <= levenshteinService.getMaxMatchLength()) {
+                Language language = levenshteinService.findClosestMatch(foldedRegion, offset, length, probe)
+                    .getLanguage();
+                if (language != null) {
+                    levenshteinMatches[language.ordinal()] += sign;
+                }
+            }
+        }
+    };
+
+    private final DetectionContext context = new DetectionContext();
+    private boolean scored;
+
+    public IncrementalDetector(CombinedLanguageDetectionService service) {
+        this(service, "");
+    }
+
+    /**
+     * @param service Service whose detectors and weighting are used
+     * @param text Initial text
+     */
+    public IncrementalDetector(CombinedLanguageDetectionService service, CharSequence text) {
+        int languageCount = Language.values().length;
+        this.service = service;
+        this.frequencyService = service.getFrequencyService();
+        this.ngramService = service.getNgramService();
+        this.stopwordService = service.getStopwordService();
+        this.levenshteinService = service.getLevenshteinService();
+        this.ngramModel = service.getHashedNgramService().getModel();
+        this.letterDotProducts = new double[languageCount];
+        this.bigramDotProducts = new double[languageCount];
+        this.stopwordCounts = new int[languageCount];
+        this.levenshteinMatches = new int[languageCount];
+        this.ngramLogLikelihoods = new double[languageCount];
+        this.runLogLikelihoods = new double[languageCount];
+        this.scanLimit = Math.max(Math.max(levenshteinService.getMaxMatchLength(), stopwordService.getMaxWordLength()),
+            HashedNgramModel.MAX_ORDER) + 1;
+        insert(0, text);
+    }
+
+    /**
+     * Insert text before the character at offset; offset length() appends.
+     */
+    public void insert(int offset, CharSequence inserted) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " outside text of length " + length());
+        }
+        if (inserted.length() == 0) {
+            return;
+        }
+        int start = tokenStart(offset);
+        int end = tokenEnd(offset);
+        int previous = letterBefore(start);
+        int next = letterFrom(end);
+
+        countRegion(start, end, previous, next, -1);
+        moveGap(offset);
+        ensureGap(inserted.length());
+        for (int i = 0; i < inserted.length(); i++) {
+            text[gapStart] = inserted.charAt(i);
+            indexSlot(gapStart++);
+        }
+        countRegion(start, end + inserted.length(), previous, next, 1);
+        scored = false;
+    }
+
+    /**
+     * Delete the length characters from offset.
+     */
+    public void delete(int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > length()) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length)
+                + ") outside text of length " + length());
+        }
+        if (length == 0) {
+            return;
+        }
+        int start = tokenStart(offset);
+        int end = tokenEnd(offset + length);
+        int previous = letterBefore(start);
+        int next = letterFrom(end);
+
+        countRegion(start, end, previous, next, -1);
+        moveGap(offset);
+        letterSlots.clear(gapEnd, gapEnd + length);
+        gapEnd += length;
+        countRegion(start, end - length, previous, next, 1);
+        scored = false;
+    }
+
+    /**
+     * Number of characters in the text.
+     */
+    public int length() {
+        return text.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * The whole text, copied.
+     */
+    public String getText() {
+        return new String(text, 0, gapStart) + new String(text, gapEnd, text.length - gapEnd);
+    }
+
+    /**
+     * Best language of the current text, ties going to the first language.
+     */
+    public Language getLanguage() {
+        return score().getLanguage();
+    }
+
+    /**
+     * Combined score of the language for the current text.
+     */
+    public double getScore(Language language) {
+        return score().getScore(language);
+    }
+
+    /**
+     * Copy of the combined scores of the current text.
+     */
+    public Map<Language, Double> getScores() {
+        return score().getScores();
+    }
+
+    /**
+     * Number of a-z letters in the text, accented or not.
+     */
+    public long getLetterTotal() {
+        return letterTotal;
+    }
+
+    private DetectionContext score() {
+        if (!scored) {
+            service.scoreIncremental(this, context);
+            scored = true;
+        }
+        return context;
+    }
+
+    /**
+     * Start of the token that ends at or runs through offset, or offset if none does,
+     * but no more than scanLimit characters before offset.
+     */
+    private int tokenStart(int offset) {
+        int limit = Math.max(0, offset - scanLimit);
+        while (offset > limit && !Tokenizer.isWhitespace(charAt(offset - 1))) {
+            offset--;
+        }
+        return offset;
+    }
+
+    /**
+     * End of the token that starts at or runs through offset, or offset if none does,
+     * but no more than scanLimit characters after offset.
+     */
+    private int tokenEnd(int offset) {
+        int limit = Math.min(length(), offset + scanLimit);
+        while (offset < limit && !Tokenizer.isWhitespace(charAt(offset))) {
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * Index (letter - 'a') of the last word letter before offset, or -1 if there is none.
+     */
+    private int letterBefore(int offset) {
+        if (offset == 0) {
+            return -1;
+        }
+        return letterAt(letterSlots.previousSetBit(slot(offset - 1)));
+    }
+
+    /**
+     * Index (letter - 'a') of the first word letter at or after offset, or -1 if there is none.
+     */
+    private int letterFrom(int offset) {
+        return letterAt(letterSlots.nextSetBit(slot(offset)));
+    }
+
+    /**
+     * Index (letter - 'a') of the word letter in the buffer slot, or -1 for no slot.
+     */
+    private int letterAt(int slot) {
+        return slot < 0 ? -1 : Tokenizer.baseLetter(Tokenizer.fold(text[slot])) - 'a';
+    }
+
+    /**
+     * Add (sign 1) or remove (sign -1) the counts of the text [start, end), which
+     * begins and ends at whitespace or the ends of the text, with the bigrams that
+     * link it to the letters before and after it.
+     *
+     * @param previous Last letter before the region, or -1
+     * @param next First letter after the region, or -1
+     */
+    private void countRegion(int start, int end, int previous, int next, int sign) {
+        int length = end - start;
+        if (region.length < length) {
+            region = new char[Math.max(length, region.length * 2)];
+            foldedRegion = new char[region.length];
+            regionView = CharBuffer.wrap(region);
+        }
+        copyText(start, end, region);
+
+        this.sign = sign;
+        alphabeticTotal += sign * (long) Tokenizer.scan(regionView.limit(length), foldedRegion, spans);
+
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? foldedRegion[i] : ' ';
+            if (Tokenizer.isWordLetter(c)) {
+                int letter = Tokenizer.baseLetter(c) - 'a';
+                addLetter(letter, sign);
+                if (Tokenizer.isAccented(c)) {
+                    accentedTotal += sign;
+                }
+                if (previous >= 0) {
+                    addBigram(previous * TextFeatures.ALPHABET_SIZE + letter, sign);
+                }
+                previous = letter;
+            }
+
+            if (Tokenizer.isLetter(c)) {
+                if (runStart < 0) {
+                    runStart = i;
+                }
+            } else if (runStart >= 0) {
+                addNgrams(runStart, i - runStart, sign);
+                runStart = -1;
+            }
+        }
+        if (previous >= 0 && next >= 0) {
+            addBigram(previous * TextFeatures.ALPHABET_SIZE + next, sign);
+        }
+    }
+
+    private void addLetter(int letter, int delta) {
+        long count = letterCounts[letter];
+        // (n + d)^2 - n^2 and (n + d)(n + d - 1) - n(n - 1) for d = 1 or -1
+        letterSquares += 2 * count * delta + 1;
+        coincidences += 2 * count * delta + 1 - delta;
+        letterCounts[letter] = count + delta;
+        letterTotal += delta;
+        frequencyService.addDotProducts(letter, delta, letterDotProducts);
+    }
+
+    private void addBigram(int bigram, int delta) {
+        long count = bigramCounts[bigram];
+        bigramSquares += 2 * count * delta + 1;
+        bigramCounts[bigram] = count + delta;
+        ngramService.addDotProducts(bigram, delta, bigramDotProducts);
+    }
+
+    private void addNgrams(int offset, int length, int sign) {
+        Arrays.fill(runLogLikelihoods, 0.0);
+        int count = ngramModel.score(foldedRegion, offset, length, runLogLikelihoods);
+        for (int lang = 0; lang < ngramLogLikelihoods.length; lang++) {
+            ngramLogLikelihoods[lang] += sign * runLogLikelihoods[lang];
+        }
+        ngramCount += sign * count;
+    }
+
+    private char charAt(int index) {
+        return text[slot(index)];
+    }
+
+    /**
+     * Buffer slot of the character at index; length() maps to the end of the buffer.
+     */
+    private int slot(int index) {
+        return index < gapStart ? index : index + gapEnd - gapStart;
+    }
+
+    /**
+     * Mark the buffer slot in the letter index if it holds a word letter.
+     */
+    private void indexSlot(int slot) {
+        if (Tokenizer.isWordLetter(Tokenizer.fold(text[slot]))) {
+            letterSlots.set(slot);
+        } else {
+            letterSlots.clear(slot);
+        }
+    }
+
+    private void copyText(int start, int end, char[] target) {
+        int beforeGap = Math.max(0, Math.min(end, gapStart) - start);
+        System.arraycopy(text, start, target, 0, beforeGap);
+        int gap = gapEnd - gapStart;
+        int from = Math.max(start, gapStart);
+        System.arraycopy(text, from + gap, target, beforeGap, end - from > 0 ? end - from : 0);
+    }
+
+    /**
+     * Move the gap to offset, copying only the text between the old and the new place.
+     */
+    private void moveGap(int offset) {
+        // The letter index moves with the text; of the new gap, only the slots outside the old one need clearing
+        if (offset < gapStart) {
+            int moved = gapStart - offset;
+            System.arraycopy(text, offset, text, gapEnd - moved, moved);
+            letterSlots.copy(offset, gapEnd - moved, moved);
+            letterSlots.clear(offset, Math.min(gapStart, gapEnd - moved));
+            gapStart = offset;
+            gapEnd -= moved;
+        } else if (offset > gapStart) {
+            int moved = offset - gapStart;
+            System.arraycopy(text, gapEnd, text, gapStart, moved);
+            letterSlots.copy(gapEnd, gapStart, moved);
+            letterSlots.clear(Math.max(gapEnd, gapStart + moved), gapEnd + moved);
+            gapStart = offset;
+            gapEnd += moved;
+        }
+    }
+
+    /**
+     * Grow the buffer so the gap holds at least the given number of characters.
+     */
+    private void ensureGap(int needed) {
+        if (gapEnd - gapStart >= needed) {
+            return;
+        }
+        int tailLength = text.length - gapEnd;
+        int capacity = Math.max(text.length * 2, length() + needed + INITIAL_CAPACITY);
+        char[] grown = new char[capacity];
+        System.arraycopy(text, 0, grown, 0, gapStart);
+        System.arraycopy(text, gapEnd, grown, capacity - tailLength, tailLength);
+        text = grown;
+        gapEnd = capacity - tailLength;
+        letterSlots = new HierarchicalBitSet(capacity);
+        for (int i = 0; i < gapStart; i++) {
+            indexSlot(i);
+        }
+        for (int i = gapEnd; i < capacity; i++) {
+            indexSlot(i);
+        }
+    }
+
+    long[] bigramCounts() {
+        return bigramCounts;
+    }
+
+    double[] letterDotProducts() {
+        return letterDotProducts;
+    }
+
+    double[] bigramDotProducts() {
+        return bigramDotProducts;
+    }
+
+    long getLetterSquares() {
+        return letterSquares;
+    }
+
+    long getBigramSquares() {
+        return bigramSquares;
+    }
+
+    long getCoincidences() {
+        return coincidences;
+    }
+
+    long getAccentedTotal() {
+        return accentedTotal;
+    }
+
+    long getAlphabeticTotal() {
+        return alphabeticTotal;
+    }
+
+    long[] letterCounts() {
+        return letterCounts;
+    }
+
+    int[] stopwordCounts() {
+        return stopwordCounts;
+    }
+
+    int[] levenshteinMatches() {
+        return levenshteinMatches;
+    }
+
+    double[] ngramLogLikelihoods() {
+        return ngramLogLikelihoods;
+    }
+
+    long ngramCount() {
+        return ngramCount;
+    }
+}
@@ -1,6 +1,7 @@
 package com.letterfrequency.service;
 
 import com.letterfrequency.model.Language;
+import com.letterfrequency.profile.LanguageProfiles;
 import java.util.*;
 
 /**
@@ -10,21 +11,27 @@ import java.util.*;
  */
 public class IndexOfCoincidenceService implements LanguageDetectionService {
     
-    // Expected IC values for each language (based on linguistic research)
+    private static final Language[] LANGUAGES = Language.values();
+    
+    // Maximum expected difference for normalization
+    private static final double MAX_DIFFERENCE = 0.05;
+    
+    // Expected IC values for each language, from the language profiles
     private final Map<Language, Double> expectedIC;
+    // The same values indexed by Language.ordinal()
+    private final double[] expectedValues;
     
     public IndexOfCoincidenceService() {
-        this.expectedIC = initializeExpectedIC();
+        this(LanguageProfiles.getDefault());
     }
     
-    private Map<Language, Double> initializeExpectedIC() {
-        Map<Language, Double> ic = new EnumMap<>(Language.class);
-        ic.put(Language.ENGLISH, 0.0667);
-        ic.put(Language.FRENCH, 0.0778);
-        ic.put(Language.GERMAN, 0.0762);
-        ic.put(Language.ITALIAN, 0.0738);
-        ic.put(Language.DUTCH, 0.0798);
-        return ic;
+    public IndexOfCoincidenceService(LanguageProfiles profiles) {
+        this.expectedIC = new EnumMap<>(Language.class);
+        this.expectedValues = new double[LANGUAGES.length];
+        for (Language lang : LANGUAGES) {
+            expectedIC.put(lang, profiles.get(lang).getExpectedIC());
+            expectedValues[lang.ordinal()] = profiles.get(lang).getExpectedIC();
+        }
     }
     
     @Override
@@ -37,25 +44,43 @@ public class IndexOfCoincidenceService implements LanguageDetectionService {
     }
     
     @Override
-    public Map<Language, Double> getLanguageScores(String text) {
-        double calculatedIC = calculateIC(text);
-        Map<Language, Double> scores = new EnumMap<>(Language.class);
-        
-        // Score each language based on how close the calculated IC is to expected IC
-        // Using inverse of absolute difference, normalized
-        double maxDifference = 0.05; // Maximum expected difference for normalization
+    public Map<Language, Double> getLanguageScores(TextFeatures features) {
+        return getLanguageScores(calculateIC(features));
+    }
+    
+    /**
+     * Score each language by how close an already calculated IC is to its expected IC.
+     * 
+     * @param calculatedIC The IC of the input text
+     * @return Similarity scores between 0 and 1, higher is better
+     */
+    public Map<Language, Double> getLanguageScores(double calculatedIC) {
+        double[] similarities = new double[LANGUAGES.length];
+        calculateScores(calculatedIC, similarities);
         
-        for (Language lang : Language.values()) {
-            double expectedValue = expectedIC.get(lang);
-            double difference = Math.abs(calculatedIC - expectedValue);
-            // Convert difference to a similarity score (0-1, higher is better)
-            double similarity = Math.max(0, 1 - (difference / maxDifference));
-            scores.put(lang, similarity);
+        Map<Language, Double> scores = new EnumMap<>(Language.class);
+        for (Language lang : LANGUAGES) {
+            scores.put(lang, similarities[lang.ordinal()]);
         }
         
         return scores;
     }
     
+    /**
+     * Score each language by how close an already calculated IC is to its expected IC,
+     * using the inverse of the absolute difference, normalized.
+     * 
+     * @param calculatedIC The IC of the input text
+     * @param scores Output array indexed by Language.ordinal(), between 0 and 1, higher is better
+     */
+    public void calculateScores(double calculatedIC, double[] scores) {
+        for (int lang = 0; lang < expectedValues.length; lang++) {
+            double difference = Math.abs(calculatedIC - expectedValues[lang]);
+            // Convert difference to a similarity score (0-1, higher is better)
+            scores[lang] = Math.max(0, 1 - (difference / MAX_DIFFERENCE));
+        }
+    }
+    
     /**
      * Calculate the Index of Coincidence for the given text.
      * Formula: IC = Σ(n_i * (n_i - 1)) / (N * (N - 1))
@@ -65,30 +90,52 @@ public class IndexOfCoincidenceService implements LanguageDetectionService {
      * @return The calculated IC value
      */
     public double calculateIC(String text) {
-        // Count letter frequencies
-        Map<Character, Integer> letterCounts = new HashMap<>();
-        int totalLetters = 0;
-        
-        for (char c : text.toLowerCase().toCharArray()) {
-            if (c >= 'a' && c <= 'z') {
-                letterCounts.merge(c, 1, Integer::sum);
-                totalLetters++;
-            }
-        }
-        
+        return calculateIC(TextFeatures.extract(text));
+    }
+    
+    /**
+     * Calculate the Index of Coincidence from the letter histogram of extracted features.
+     * 
+     * @param features The extracted text features
+     * @return The calculated IC value
+     */
+    public double calculateIC(TextFeatures features) {
+        return calculateIC(features.letterCounts(), features.getLetterTotal());
+    }
+    
+    /**
+     * Calculate the Index of Coincidence from a letter histogram.
+     * 
+     * @param letterCounts Letter counts indexed by (letter - 'a')
+     * @param totalLetters Sum of the letter counts
+     * @return The calculated IC value
+     */
+    public double calculateIC(long[] letterCounts, long totalLetters) {
         if (totalLetters <= 1) {
             return 0.0; // Not enough letters to calculate IC
         }
         
         // Calculate IC using the formula: Σ(n_i * (n_i - 1)) / (N * (N - 1))
         double numerator = 0;
-        for (int count : letterCounts.values()) {
-            numerator += count * (count - 1);
+        for (long count : letterCounts) {
+            numerator += (double) count * (count - 1);
         }
         
-        double denominator = (double) totalLetters * (totalLetters - 1);
-        
-        return numerator / denominator;
+        return calculateIC(numerator, totalLetters);
+    }
+    
+    /**
+     * Calculate the Index of Coincidence from its numerator, kept up to date as letters
+     * are added and removed: a letter whose count goes from n to n + 1 adds 2n.
+     * 
+     * @param coincidences Σ(n_i * (n_i - 1)) over the letter counts
+     * @param totalLetters Sum of the letter counts
+     */
+    public double calculateIC(double coincidences, long totalLetters) {
+        if (totalLetters <= 1) {
+            return 0.0;
+        }
+        return coincidences / ((double) totalLetters * (totalLetters - 1));
     }
     
     /**
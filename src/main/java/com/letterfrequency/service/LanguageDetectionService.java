@@ -1,9 +1,53 @@
 package com.letterfrequency.service;
 
 import com.letterfrequency.model.Language;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public interface LanguageDetectionService {
     Language detectLanguage(String text);
-    Map<Language, Double> getLanguageScores(String text);
+
+    default Map<Language, Double> getLanguageScores(String text) {
+        return getLanguageScores(TextFeatures.extract(text));
+    }
+
+    /**
+     * Score the languages from features that were already extracted,
+     * so several services can share a single pass over the text.
+     */
+    Map<Language, Double> getLanguageScores(TextFeatures features);
+
+    /**
+     * The language that scores from this service point to, the same one detectLanguage() returns.
+     * By default the highest score wins, ties going to the first language.
+     */
+    default Language selectLanguage(Map<Language, Double> scores) {
+        return scores.entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .map(Map.Entry::getKey)
+            .orElse(Language.ENGLISH);
+    }
+
+    /**
+     * Detect the language of every text. Results are in input order.
+     */
+    default List<Language> detectLanguages(List<? extends CharSequence> texts) {
+        List<Language> languages = new ArrayList<>(texts.size());
+        for (CharSequence text : texts) {
+            languages.add(detectLanguage(text.toString()));
+        }
+        return languages;
+    }
+
+    /**
+     * Score the languages of every text. Results are in input order.
+     */
+    default List<Map<Language, Double>> getLanguageScores(List<? extends CharSequence> texts) {
+        List<Map<Language, Double>> scores = new ArrayList<>(texts.size());
+        for (CharSequence text : texts) {
+            scores.add(getLanguageScores(TextFeatures.extract(text)));
+        }
+        return scores;
+    }
 }
@@ -1,13 +1,43 @@
 package com.letterfrequency.service;
 
 import com.letterfrequency.model.Language;
+import com.letterfrequency.profile.LanguageProfiles;
+import com.letterfrequency.util.LruCache;
+import com.letterfrequency.util.WordKey;
 import java.util.*;
 
 public class LevenshteinAnalysisService implements LanguageDetectionService {
-    private final Map<Language, List<String>> commonWords;
+    private static final Language[] LANGUAGES = Language.values();
+
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    // Symmetric-delete index over the common words of every language
+    private final CommonWordIndex commonWordIndex;
+    // Closest match per word, shared by all calls for the lifetime of the service
+    private final LruCache<WordKey, ClosestMatch> matchCache;
 
     public LevenshteinAnalysisService() {
-        this.commonWords = initializeCommonWords();
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize Maximum number of distinct words whose closest match is remembered
+     */
+    public LevenshteinAnalysisService(int cacheSize) {
+        this(LanguageProfiles.getDefault(), cacheSize);
+    }
+
+    /**
+     * @param profiles Profiles whose common words make up the vocabulary
+     * @param cacheSize Maximum number of distinct words whose closest match is remembered
+     */
+    public LevenshteinAnalysisService(LanguageProfiles profiles, int cacheSize) {
+        Map<Language, List<String>> vocabulary = new EnumMap<>(Language.class);
+        for (Language lang : LANGUAGES) {
+            vocabulary.put(lang, profiles.get(lang).getCommonWords());
+        }
+        this.commonWordIndex = new CommonWordIndex(vocabulary, CommonWordIndex.DEFAULT_MAX_DISTANCE);
+        this.matchCache = new LruCache<>(cacheSize);
     }
 
     @Override
@@ -20,107 +50,160 @@ public class LevenshteinAnalysisService implements LanguageDetectionService {
     }
 
     @Override
-    public Map<Language, Double> getLanguageScores(String text) {
-        String[] words = text.toLowerCase().split("\\s+");
-        Map<Language, Integer> matches = new EnumMap<>(Language.class);
-
-        for (String word : words) {
-            if (word.length() >= 3) {
-                Language bestMatch = findClosestLanguage(word);
-                matches.merge(bestMatch, 1, Integer::sum);
-            }
+    public Map<Language, Double> getLanguageScores(TextFeatures features) {
+        int[] matches = new int[LANGUAGES.length];
+        countMatches(features, new WordKey(), matches);
+        return getLanguageScores(matches);
+    }
+
+    /**
+     * Add the closest language of every token to the match counts. Once the words of
+     * the text are cached, this allocates nothing.
+     *
+     * @param probe Reusable key for the cache lookups
+     * @param matches Match counts indexed by Language.ordinal(), updated in place
+     */
+    public void countMatches(TextFeatures features, WordKey probe, int[] matches) {
+        char[] chars = features.chars();
+        // Tokens are whitespace-delimited, so punctuation stays attached to the word
+        for (int i = 0; i < features.getTokenCount(); i++) {
+            countMatch(chars, features.getTokenStart(i), features.getTokenLength(i), probe, matches);
         }
+    }
 
-        return normalizeScores(matches);
+    /**
+     * Add the closest language of the token chars[offset, offset + length) to the match counts.
+     * Tokens shorter than three characters are skipped.
+     *
+     * @param probe Reusable key for the cache lookup
+     * @param matches Match counts indexed by Language.ordinal(), updated in place
+     */
+    public void countMatch(char[] chars, int offset, int length, WordKey probe, int[] matches) {
+        if (length < 3) {
+            return;
+        }
+        Language language = findClosestMatch(chars, offset, length, probe).getLanguage();
+        if (language != null) {
+            matches[language.ordinal()]++;
+        }
     }
 
-    private Language findClosestLanguage(String word) {
-        double bestScore = -1;
-        Language bestMatch = Language.ENGLISH;
+    /**
+     * Find the closest match of the token chars[offset, offset + length), from the cache if possible.
+     * Tokens longer than getMaxMatchLength() cannot match and are never cached, so unique
+     * long tokens such as URLs and hashes do not push the frequent words out of the cache.
+     *
+     * @param probe Reusable key for the cache lookup
+     */
+    public ClosestMatch findClosestMatch(char[] chars, int offset, int length, WordKey probe) {
+        if (length > getMaxMatchLength()) {
+            return ClosestMatch.NONE;
+        }
+        ClosestMatch match = matchCache.get(probe.set(chars, offset, length));
+        if (match == null) {
+            match = findClosestMatch(chars, offset, length, new double[LANGUAGES.length]);
+            matchCache.put(WordKey.copyOf(chars, offset, length), match);
+        }
+        return match;
+    }
 
-        for (Map.Entry<Language, List<String>> entry : commonWords.entrySet()) {
-            double languageScore = entry.getValue().stream()
-                .mapToDouble(commonWord -> calculateSimilarity(word, commonWord))
-                .max()
-                .orElse(0.0);
+    /**
+     * Turn per-language match counts into each language's share of the matched tokens.
+     *
+     * @param matches Match counts indexed by Language.ordinal()
+     */
+    public Map<Language, Double> getLanguageScores(int[] matches) {
+        double[] shares = new double[LANGUAGES.length];
+        calculateScores(matches, shares);
 
-            if (languageScore > bestScore) {
-                bestScore = languageScore;
-                bestMatch = entry.getKey();
-            }
+        Map<Language, Double> normalizedScores = new EnumMap<>(Language.class);
+        for (Language lang : LANGUAGES) {
+            normalizedScores.put(lang, shares[lang.ordinal()]);
         }
 
-        return bestMatch;
+        return normalizedScores;
     }
 
-    private double calculateSimilarity(String word1, String word2) {
-        int distance = calculateDistance(word1, word2);
-        int maxLength = Math.max(word1.length(), word2.length());
-        return maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
+    /**
+     * Turn per-language match counts into each language's share of the matched tokens.
+     *
+     * @param matches Match counts indexed by Language.ordinal()
+     * @param scores Output array indexed by Language.ordinal()
+     */
+    public void calculateScores(int[] matches, double[] scores) {
+        int total = 0;
+        for (int count : matches) {
+            total += count;
+        }
+
+        for (int lang = 0; lang < matches.length; lang++) {
+            scores[lang] = total > 0 ? (double) matches[lang] / total : 0.0;
+        }
     }
 
-    private int calculateDistance(String word1, String word2) {
-        int[][] dp = new int[word1.length() + 1][word2.length() + 1];
+    /**
+     * Length beyond which a token is too far from every common word to match.
+     */
+    public int getMaxMatchLength() {
+        return commonWordIndex.getMaxMatchLength();
+    }
 
-        for (int i = 0; i <= word1.length(); i++) {
-            dp[i][0] = i;
-        }
-        for (int j = 0; j <= word2.length(); j++) {
-            dp[0][j] = j;
+    /**
+     * Find the language whose common words contain the most similar word.
+     * Only words within the index's edit distance are considered; ties go to the first language.
+     *
+     * @param similarities Scratch array indexed by Language.ordinal()
+     */
+    private ClosestMatch findClosestMatch(char[] chars, int offset, int length, double[] similarities) {
+        if (!commonWordIndex.findBestSimilarities(chars, offset, length, similarities)) {
+            return ClosestMatch.NONE;
         }
 
-        for (int i = 1; i <= word1.length(); i++) {
-            for (int j = 1; j <= word2.length(); j++) {
-                if (word1.charAt(i - 1) == word2.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1];
-                } else {
-                    dp[i][j] = 1 + Math.min(
-                        dp[i - 1][j - 1],
-                        Math.min(dp[i - 1][j], dp[i][j - 1])
-                    );
-                }
+        int best = 0;
+        for (int i = 1; i < similarities.length; i++) {
+            if (similarities[i] > similarities[best]) {
+                best = i;
             }
         }
+        return new ClosestMatch(LANGUAGES[best], similarities[best]);
+    }
 
-        return dp[word1.length()][word2.length()];
+    public long getCacheHits() {
+        return matchCache.getHitCount();
     }
 
-    private Map<Language, Double> normalizeScores(Map<Language, Integer> matches) {
-        Map<Language, Double> normalizedScores = new EnumMap<>(Language.class);
-        int total = matches.values().stream().mapToInt(Integer::intValue).sum();
+    public long getCacheMisses() {
+        return matchCache.getMissCount();
+    }
 
-        // Initialize all languages with 0.0
-        for (Language lang : Language.values()) {
-            normalizedScores.put(lang, 0.0);
-        }
+    public int getCacheSize() {
+        return matchCache.size();
+    }
+
+    /**
+     * The language with the most similar common word, and that similarity.
+     */
+    public static class ClosestMatch {
+        // No common word within the index's edit distance
+        static final ClosestMatch NONE = new ClosestMatch(null, 0.0);
+
+        private final Language language;
+        private final double similarity;
 
-        if (total > 0) {
-            matches.forEach((lang, count) ->
-                normalizedScores.put(lang, (double) count / total));
+        ClosestMatch(Language language, double similarity) {
+            this.language = language;
+            this.similarity = similarity;
         }
 
-        return normalizedScores;
-    }
+        /**
+         * @return The closest language, or null if no common word is close enough
+         */
+        public Language getLanguage() {
+            return language;
+        }
 
-    private Map<Language, List<String>> initializeCommonWords() {
-        Map<Language, List<String>> words = new EnumMap<>(Language.class);
-        
-        words.put(Language.ENGLISH, Arrays.asList(
-            "the", "be", "to", "of", "and", "a", "in", "that", "have", "i"
-        ));
-        words.put(Language.FRENCH, Arrays.asList(
-            "le", "la", "les", "de", "et", "être", "avoir", "que", "pour", "dans"
-        ));
-        words.put(Language.GERMAN, Arrays.asList(
-            "der", "die", "das", "und", "in", "sein", "zu", "haben", "mit", "für"
-        ));
-        words.put(Language.ITALIAN, Arrays.asList(
-            "il", "di", "che", "è", "la", "in", "non", "un", "per", "sono"
-        ));
-        words.put(Language.DUTCH, Arrays.asList(
-            "de", "het", "een", "van", "en", "in", "is", "dat", "op", "te"
-        ));
-
-        return words;
+        public double getSimilarity() {
+            return similarity;
+        }
     }
 }
@@ -0,0 +1,289 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.profile.LanguageProfile;
+import com.letterfrequency.profile.LanguageProfiles;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds language profiles from labeled UTF-8 text. The files of every language are
+ * split into chunks that end on whitespace, as CorpusAnalysisService does, and each
+ * chunk is memory-mapped and counted on its own fork-join task into its own counters,
+ * which are merged pairwise. No file is ever read into a String, so a corpus of any
+ * size is trained in fixed memory per task.
+ *
+ * <p>From the counts, each profile gets the letter frequencies with accented letters
+ * under their base letter, the share of accented letters, the most frequent bigrams,
+ * the index of coincidence, the most frequent words without their accents as
+ * stopwords, the most frequent words of any letters as common words, and the hashed
+ * 1-4-gram table, which also covers trigrams. Chunks are counted as separate texts, so the one bigram
+ * joining two chunks is not counted.
+ */
+public class ProfileTrainingService {
+    public static final int DEFAULT_NGRAM_TABLE_BITS = 14;
+
+    // Target size of a mapped chunk in bytes
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    // Entries per profile, as in the bundled profiles
+    private static final int BIGRAM_PROFILE_SIZE = 30;
+    private static final int STOPWORD_COUNT = 100;
+    private static final int COMMON_WORD_COUNT = 40;
+
+    private final int ngramTableBits;
+    private final int chunkSize;
+
+    public ProfileTrainingService() {
+        this(DEFAULT_NGRAM_TABLE_BITS);
+    }
+
+    public ProfileTrainingService(int ngramTableBits) {
+        this(ngramTableBits, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param ngramTableBits Base-2 logarithm of the hashed n-gram table size
+     * @param chunkSize Target number of bytes counted per task
+     */
+    public ProfileTrainingService(int ngramTableBits, int chunkSize) {
+        if (ngramTableBits < 1 || ngramTableBits > 30) {
+            throw new IllegalArgumentException("Table bits must be between 1 and 30: " + ngramTableBits);
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.ngramTableBits = ngramTableBits;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Train on a corpus directory with one subdirectory per language, named after the
+     * lowercase Language constant (english, dutch, ...). Every regular file below a
+     * language directory is read as UTF-8 text of that language.
+     */
+    public TrainingResult train(Path corpusDirectory) throws IOException {
+        return train(corpusDirectory, ForkJoinPool.commonPool());
+    }
+
+    public TrainingResult train(Path corpusDirectory, ForkJoinPool pool) throws IOException {
+        Map<Language, List<Path>> files = new EnumMap<>(Language.class);
+        for (Language language : Language.values()) {
+            Path directory = corpusDirectory.resolve(language.name().toLowerCase(Locale.ROOT));
+            if (!Files.isDirectory(directory)) {
+                throw new IllegalArgumentException("No training directory for " + language + ": " + directory);
+            }
+            try (Stream<Path> paths = Files.walk(directory)) {
+                files.put(language, paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+            }
+        }
+        return train(files, pool);
+    }
+
+    /**
+     * Train on the given files of every language. Each phase is timed: splitting the
+     * files into chunks, counting them in parallel, and building the profiles.
+     */
+    public TrainingResult train(Map<Language, List<Path>> files, ForkJoinPool pool) throws IOException {
+        Map<String, Duration> phaseTimes = new LinkedHashMap<>();
+
+        long start = System.nanoTime();
+        Map<Language, List<TextChunk>> chunks = new EnumMap<>(Language.class);
+        long byteCount = 0;
+        int fileCount = 0;
+        for (Language language : Language.values()) {
+            List<TextChunk> languageChunks = new ArrayList<>();
+            for (Path file : files.getOrDefault(language, Collections.emptyList())) {
+                languageChunks.addAll(TextChunk.split(file, chunkSize));
+                fileCount++;
+            }
+            for (TextChunk chunk : languageChunks) {
+                byteCount += chunk.size();
+            }
+            chunks.put(language, languageChunks);
+        }
+        long lap = lap("split", start, phaseTimes);
+
+        Map<Language, ForkJoinTask<TrainingCounts>> tasks = new EnumMap<>(Language.class);
+        for (Language language : Language.values()) {
+            List<TextChunk> languageChunks = chunks.get(language);
+            if (languageChunks.isEmpty()) {
+                throw new IllegalArgumentException("No training text for " + language);
+            }
+            tasks.put(language, pool.submit(new CountTask(languageChunks, 0, languageChunks.size())));
+        }
+        Map<Language, TrainingCounts> counts = new EnumMap<>(Language.class);
+        try {
+            for (Language language : Language.values()) {
+                counts.put(language, tasks.get(language).join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        lap = lap("count", lap, phaseTimes);
+
+        List<LanguageProfile> profiles = new ArrayList<>();
+        long charCount = 0;
+        for (Language language : Language.values()) {
+            profiles.add(buildProfile(language, counts.get(language)));
+            charCount += counts.get(language).getCharCount();
+        }
+        LanguageProfiles result = new LanguageProfiles(profiles);
+        lap("build", lap, phaseTimes);
+
+        return new TrainingResult(result, phaseTimes, fileCount, byteCount, charCount);
+    }
+
+    private static long lap(String phase, long start, Map<String, Duration> phaseTimes) {
+        long end = System.nanoTime();
+        phaseTimes.put(phase, Duration.ofNanos(end - start));
+        return end;
+    }
+
+    private TrainingCounts countChunk(TextChunk chunk) {
+        TrainingCounts counts = new TrainingCounts(ngramTableBits);
+        try {
+            chunk.decode(counts::accept);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        counts.finish();
+        return counts;
+    }
+
+    private static LanguageProfile buildProfile(Language language, TrainingCounts counts) {
+        long letterTotal = counts.getLetterTotal();
+        if (letterTotal < 2) {
+            throw new IllegalArgumentException("Too few letters in the training text for " + language);
+        }
+
+        long[] letterCounts = counts.letterCounts();
+        double[] letterFrequencies = new double[TextFeatures.ALPHABET_SIZE];
+        double coincidences = 0.0;
+        for (int i = 0; i < letterCounts.length; i++) {
+            letterFrequencies[i] = (double) letterCounts[i] / letterTotal;
+            coincidences += (double) letterCounts[i] * (letterCounts[i] - 1);
+        }
+        double expectedIC = coincidences / ((double) letterTotal * (letterTotal - 1));
+
+        return new LanguageProfile(language, expectedIC, (double) counts.getAccentedTotal() / letterTotal,
+            letterFrequencies,
+            topBigrams(counts.bigramCounts(), counts.getBigramTotal()),
+            sorted(counts.topWords(STOPWORD_COUNT, true)),
+            counts.topWords(COMMON_WORD_COUNT, false),
+            counts.ngrams().toLogProbabilities());
+    }
+
+    /**
+     * Frequencies of the most frequent bigrams among all bigrams; the others are 0.
+     */
+    private static double[] topBigrams(long[] bigramCounts, long bigramTotal) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < bigramCounts.length; i++) {
+            if (bigramCounts[i] > 0) {
+                indexes.add(i);
+            }
+        }
+        indexes.sort((a, b) -> Long.compare(bigramCounts[b], bigramCounts[a]));
+
+        double[] frequencies = new double[TextFeatures.BIGRAM_COUNT];
+        for (int i = 0; i < BIGRAM_PROFILE_SIZE && i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            frequencies[index] = (double) bigramCounts[index] / bigramTotal;
+        }
+        return frequencies;
+    }
+
+    private static List<String> sorted(List<String> words) {
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Count a range of chunks of one language, splitting it in halves and merging the halves.
+     */
+    @SuppressWarnings("serial")
+    private final class CountTask extends RecursiveTask<TrainingCounts> {
+        private final List<TextChunk> chunks;
+        private final int start;
+        private final int end;
+
+        CountTask(List<TextChunk> chunks, int start, int end) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected TrainingCounts compute() {
+            if (end - start == 1) {
+                return countChunk(chunks.get(start));
+            }
+            int middle = (start + end) >>> 1;
+            CountTask right = new CountTask(chunks, middle, end);
+            right.fork();
+            TrainingCounts counts = new CountTask(chunks, start, middle).compute();
+            counts.merge(right.join());
+            return counts;
+        }
+    }
+
+    /**
+     * Trained profiles and statistics of the training run.
+     */
+    public static class TrainingResult {
+        private final LanguageProfiles profiles;
+        private final Map<String, Duration> phaseTimes;
+        private final int fileCount;
+        private final long byteCount;
+        private final long charCount;
+
+        TrainingResult(LanguageProfiles profiles, Map<String, Duration> phaseTimes,
+                       int fileCount, long byteCount, long charCount) {
+            this.profiles = profiles;
+            this.phaseTimes = Collections.unmodifiableMap(phaseTimes);
+            this.fileCount = fileCount;
+            this.byteCount = byteCount;
+            this.charCount = charCount;
+        }
+
+        public LanguageProfiles getProfiles() {
+            return profiles;
+        }
+
+        /**
+         * Wall-clock time of each phase, in the order they ran.
+         */
+        public Map<String, Duration> getPhaseTimes() {
+            return phaseTimes;
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        public long getCharCount() {
+            return charCount;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.Tokenizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a document that mixes languages into contiguous segments of one language.
+ * The document is cut into blocks of step characters, and each block is labeled with
+ * the best language of the window of windowSize characters centered on it, scored by
+ * CombinedLanguageDetectionService with its profiles and weights. The window's
+ * features are updated as it slides rather than recounted, so a whole document costs
+ * time proportional to its length, not to its length times the window size.
+ *
+ * <p>Runs of blocks with the same language become segments. Segments shorter than
+ * half a window are taken as noise and merged into the segment before them, and each
+ * boundary is moved forward to the start of the next token within a step, so that
+ * words are not split.
+ */
+public class SegmentationService {
+    public static final int DEFAULT_WINDOW_SIZE = 200;
+    public static final int DEFAULT_STEP = 20;
+
+    private static final Language[] LANGUAGES = Language.values();
+
+    private final CombinedLanguageDetectionService languageService;
+    private final int windowSize;
+    private final int step;
+
+    public SegmentationService(CombinedLanguageDetectionService languageService) {
+        this(languageService, DEFAULT_WINDOW_SIZE, DEFAULT_STEP);
+    }
+
+    /**
+     * @param languageService Service whose detectors and weighting are used
+     * @param windowSize Number of characters each block is judged by
+     * @param step Number of characters per block, the resolution of the boundaries
+     */
+    public SegmentationService(CombinedLanguageDetectionService languageService, int windowSize, int step) {
+        if (windowSize <= 0 || step <= 0) {
+            throw new IllegalArgumentException("Window size and step must be positive: " + windowSize + ", " + step);
+        }
+        this.languageService = languageService;
+        this.windowSize = windowSize;
+        this.step = step;
+    }
+
+    /**
+     * Segments covering the whole text in order, without gaps; none for an empty text.
+     */
+    public List<Segment> segment(CharSequence text) {
+        int length = text.length();
+        List<Segment> segments = new ArrayList<>();
+        if (length == 0) {
+            return segments;
+        }
+
+        WindowFeatures features = languageService.newWindowFeatures(text);
+        DetectionContext context = DetectionContext.forCurrentThread();
+        int window = Math.min(windowSize, length);
+        int blockCount = (length + step - 1) / step;
+        Language[] labels = new Language[blockCount];
+        double[] confidences = new double[blockCount];
+
+        for (int block = 0; block < blockCount; block++) {
+            int center = Math.min(block * step + step / 2, length);
+            int start = Math.max(0, Math.min(center - window / 2, length - window));
+            features.slideTo(start, start + window);
+            // A window without letters has nothing to judge; its block takes a neighbor's language
+            if (features.getAlphabeticTotal() > 0) {
+                languageService.scoreWindow(features, context);
+                labels[block] = context.getLanguage();
+                confidences[block] = confidence(context);
+            }
+        }
+        fillUnlabeled(labels);
+
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * step;
+            int end = Math.min(start + step, length);
+            Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last.language == labels[block]) {
+                last.extend(end, confidences[block]);
+            } else {
+                segments.add(new Segment(start, end, labels[block], confidences[block]));
+            }
+        }
+        mergeShortSegments(segments, Math.max(window / 2, step + 1));
+        alignToTokens(segments, features.chars());
+        return segments;
+    }
+
+    /**
+     * How clearly the best language won in the context: its lead over the runner-up
+     * relative to its own combined score, from 0 for a tie to 1.
+     */
+    private static double confidence(DetectionContext context) {
+        double best = context.getScore(context.getLanguage());
+        double second = 0.0;
+        for (Language language : LANGUAGES) {
+            if (language != context.getLanguage()) {
+                second = Math.max(second, context.getScore(language));
+            }
+        }
+        return best <= 0.0 ? 0.0 : (best - second) / best;
+    }
+
+    /**
+     * Give each unlabeled block the language of the block before it, or after it at
+     * the start. Without any label at all, the text is taken as English, as detection does.
+     */
+    private static void fillUnlabeled(Language[] labels) {
+        Language previous = null;
+        for (Language label : labels) {
+            if (label != null) {
+                previous = label;
+                break;
+            }
+        }
+        if (previous == null) {
+            previous = Language.ENGLISH;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == null) {
+                labels[i] = previous;
+            }
+            previous = labels[i];
+        }
+    }
+
+    /**
+     * Merge every segment shorter than minLength into the one before it, or into the
+     * one after it if it comes first, and join neighbors that then have the same language.
+     */
+    private static void mergeShortSegments(List<Segment> segments, int minLength) {
+        List<Segment> merged = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            Segment last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && (segment.end - segment.start < minLength || segment.language == last.language)) {
+                last.absorb(segment);
+            } else {
+                merged.add(segment);
+            }
+        }
+        if (merged.size() > 1 && merged.get(0).end - merged.get(0).start < minLength) {
+            Segment second = merged.get(1);
+            second.absorbPrevious(merged.remove(0));
+        }
+        segments.clear();
+        segments.addAll(merged);
+    }
+
+    /**
+     * Move every boundary forward to the start of the next token if there is one within
+     * a step and before the end of the segment after it.
+     */
+    private void alignToTokens(List<Segment> segments, char[] chars) {
+        for (int i = 1; i < segments.size(); i++) {
+            Segment before = segments.get(i - 1);
+            Segment after = segments.get(i);
+            int limit = Math.min(after.start + step, after.end);
+            for (int boundary = after.start; boundary < limit; boundary++) {
+                if (!Tokenizer.isWhitespace(chars[boundary]) && Tokenizer.isWhitespace(chars[boundary - 1])) {
+                    before.end = boundary;
+                    after.start = boundary;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A run of the text in one language, chars [start, end).
+     */
+    public static class Segment {
+        private int start;
+        private int end;
+        private final Language language;
+        // Sum of the confidences of the blocks voting for the language, weighted by their length
+        private double weightedConfidence;
+        private int votingLength;
+
+        Segment(int start, int end, Language language, double confidence) {
+            this.start = start;
+            this.end = end;
+            this.language = language;
+            this.weightedConfidence = confidence * (end - start);
+            this.votingLength = end - start;
+        }
+
+        void extend(int newEnd, double confidence) {
+            weightedConfidence += confidence * (newEnd - end);
+            votingLength += newEnd - end;
+            end = newEnd;
+        }
+
+        /**
+         * Take in the segment that follows. Its blocks count toward the confidence only
+         * if they voted for this language.
+         */
+        void absorb(Segment next) {
+            if (next.language == language) {
+                weightedConfidence += next.weightedConfidence;
+                votingLength += next.votingLength;
+            }
+            end = next.end;
+        }
+
+        void absorbPrevious(Segment previous) {
+            if (previous.language == language) {
+                weightedConfidence += previous.weightedConfidence;
+                votingLength += previous.votingLength;
+            }
+            start = previous.start;
+        }
+
+        /**
+         * Index of the first character of the segment.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Index after the last character of the segment.
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        public Language getLanguage() {
+            return language;
+        }
+
+        /**
+         * Mean lead of the language over the runner-up in the windows that voted for it,
+         * relative to its score: 0 when it only just won, 1 when no other language scored.
+         */
+        public double getConfidence() {
+            return votingLength == 0 ? 0.0 : weightedConfidence / votingLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%d, %d) %s %.2f", start, end, language.getDisplayName(), getConfidence());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.letterfrequency.service;
 
 import com.letterfrequency.model.Language;
+import com.letterfrequency.profile.LanguageProfiles;
 import java.util.*;
 
 /**
@@ -9,11 +10,21 @@ import java.util.*;
  * Exact matching of these words is a reliable indicator of language.
  */
 public class StopwordAnalysisService implements LanguageDetectionService {
+    private static final Language[] LANGUAGES = Language.values();
     
-    private final Map<Language, Set<String>> stopwords;
+    // All stopword sets merged into one word -> language bitmask table
+    private final StopwordTable stopwordTable;
     
     public StopwordAnalysisService() {
-        this.stopwords = initializeStopwords();
+        this(LanguageProfiles.getDefault());
+    }
+    
+    public StopwordAnalysisService(LanguageProfiles profiles) {
+        Map<Language, List<String>> stopwords = new EnumMap<>(Language.class);
+        for (Language lang : LANGUAGES) {
+            stopwords.put(lang, profiles.get(lang).getStopwords());
+        }
+        this.stopwordTable = new StopwordTable(stopwords);
     }
     
     @Override
@@ -26,152 +37,134 @@ public class StopwordAnalysisService implements LanguageDetectionService {
     }
     
     @Override
-    public Map<Language, Double> getLanguageScores(String text) {
-        // Extract words from text (only basic Latin letters)
-        String[] words = text.toLowerCase()
-            .replaceAll("[^a-zA-Z]", " ")
-            .split("\\s+");
-        
-        Map<Language, Integer> matchCounts = new EnumMap<>(Language.class);
-        
-        // Initialize all languages with 0
-        for (Language lang : Language.values()) {
-            matchCounts.put(lang, 0);
-        }
-        
-        // Count stopword matches for each language
-        for (String word : words) {
-            if (word.length() >= 2) {
-                for (Language lang : Language.values()) {
-                    if (stopwords.get(lang).contains(word)) {
-                        matchCounts.merge(lang, 1, Integer::sum);
-                    }
-                }
-            }
-        }
-        
-        // Normalize scores
-        Map<Language, Double> scores = new EnumMap<>(Language.class);
-        int maxCount = matchCounts.values().stream().mapToInt(Integer::intValue).max().orElse(1);
-        
-        if (maxCount == 0) {
-            // No matches found, return equal scores
-            for (Language lang : Language.values()) {
-                scores.put(lang, 0.2);
-            }
-        } else {
-            for (Language lang : Language.values()) {
-                scores.put(lang, (double) matchCounts.get(lang) / maxCount);
-            }
-        }
-        
-        return scores;
+    public Map<Language, Double> getLanguageScores(TextFeatures features) {
+        return analyze(features).getScores();
     }
     
     /**
      * Get the count of stopword matches for each language.
      */
     public Map<Language, Integer> getStopwordMatchCounts(String text) {
-        String[] words = text.toLowerCase()
-            .replaceAll("[^a-zA-Z]", " ")
-            .split("\\s+");
-        
-        Map<Language, Integer> matchCounts = new EnumMap<>(Language.class);
-        for (Language lang : Language.values()) {
-            matchCounts.put(lang, 0);
+        return getStopwordMatchCounts(TextFeatures.extract(text));
+    }
+    
+    /**
+     * Get the count of stopword matches for each language from extracted features.
+     */
+    public Map<Language, Integer> getStopwordMatchCounts(TextFeatures features) {
+        return analyze(features).getCounts();
+    }
+    
+    /**
+     * Count the stopword matches and derive the scores in a single scan.
+     */
+    public StopwordMatches analyze(TextFeatures features) {
+        int[] counts = new int[LANGUAGES.length];
+        countMatches(features, counts);
+        return analyze(counts);
+    }
+    
+    /**
+     * Derive the scores from match counts that were accumulated elsewhere.
+     * 
+     * @param counts Match counts indexed by Language.ordinal()
+     */
+    public StopwordMatches analyze(int[] counts) {
+        double[] scores = new double[LANGUAGES.length];
+        calculateScores(counts, scores);
+        return new StopwordMatches(counts.clone(), scores);
+    }
+    
+    /**
+     * Add the stopword matches of every word to the per-language counts.
+     * Words are the runs of basic Latin letters; one table lookup per word
+     * updates every language that has it as a stopword.
+     * 
+     * @param counts Match counts indexed by Language.ordinal(), updated in place
+     */
+    public void countMatches(TextFeatures features, int[] counts) {
+        char[] chars = features.chars();
+        for (int i = 0; i < features.getWordCount(); i++) {
+            countMatches(chars, features.getWordStart(i), features.getWordLength(i), counts);
         }
-        
-        for (String word : words) {
-            if (word.length() >= 2) {
-                for (Language lang : Language.values()) {
-                    if (stopwords.get(lang).contains(word)) {
-                        matchCounts.merge(lang, 1, Integer::sum);
-                    }
-                }
-            }
+    }
+    
+    /**
+     * Add the stopword matches of the single word chars[offset, offset + length) to the counts.
+     * 
+     * @param counts Match counts indexed by Language.ordinal(), updated in place
+     */
+    public void countMatches(char[] chars, int offset, int length, int[] counts) {
+        addMatches(matchMask(chars, offset, length), counts);
+    }
+    
+    /**
+     * The languages that have the word chars[offset, offset + length) as a stopword,
+     * as a mask with bit Language.ordinal() set for each; 0 for words of one letter.
+     */
+    int matchMask(char[] chars, int offset, int length) {
+        return length >= 2 ? stopwordTable.lookup(chars, offset, length) : 0;
+    }
+    
+    /**
+     * Length of the longest stopword; longer words never match.
+     */
+    public int getMaxWordLength() {
+        return stopwordTable.getMaxWordLength();
+    }
+    
+    private static void addMatches(int mask, int[] counts) {
+        while (mask != 0) {
+            counts[Integer.numberOfTrailingZeros(mask)]++;
+            mask &= mask - 1;
         }
-        
-        return matchCounts;
     }
     
     /**
-     * Initialize stopwords for each language - comprehensive lists for better detection.
+     * Normalize match counts against the best language.
+     * Without any match every language gets the same score.
+     * 
+     * @param counts Match counts indexed by Language.ordinal()
+     * @param scores Output array indexed by Language.ordinal()
      */
-    private Map<Language, Set<String>> initializeStopwords() {
-        Map<Language, Set<String>> words = new EnumMap<>(Language.class);
-        
-        // English stopwords
-        words.put(Language.ENGLISH, new HashSet<>(Arrays.asList(
-            "the", "be", "to", "of", "and", "a", "in", "that", "have", "i",
-            "it", "for", "not", "on", "with", "he", "as", "you", "do", "at",
-            "this", "but", "his", "by", "from", "they", "we", "say", "her", "she",
-            "or", "an", "will", "my", "one", "all", "would", "there", "their", "what",
-            "so", "up", "out", "if", "about", "who", "get", "which", "go", "me",
-            "when", "make", "can", "like", "time", "no", "just", "him", "know", "take",
-            "people", "into", "year", "your", "good", "some", "could", "them", "see", "other",
-            "than", "then", "now", "look", "only", "come", "its", "over", "think", "also",
-            "back", "after", "use", "two", "how", "our", "work", "first", "well", "way",
-            "even", "new", "want", "because", "any", "these", "give", "day", "most", "us",
-            "is", "are", "was", "were", "been", "being", "has", "had", "does", "did",
-            "shall", "should", "may", "might", "must", "am", "very", "here", "where", "why"
-        )));
-        
-        // Dutch stopwords
-        words.put(Language.DUTCH, new HashSet<>(Arrays.asList(
-            "de", "het", "een", "van", "en", "in", "is", "dat", "op", "te",
-            "zijn", "voor", "niet", "met", "hij", "ik", "je", "zij", "maar", "er",
-            "dan", "om", "aan", "nog", "bij", "door", "na", "naar", "uit", "wie",
-            "of", "zal", "waar", "was", "wel", "nu", "geen", "zou", "heeft", "meer",
-            "worden", "kan", "ook", "als", "dit", "tot", "wat", "hebben", "mijn", "over",
-            "deze", "hun", "werd", "haar", "zo", "worden", "wij", "al", "waren", "veel",
-            "me", "ben", "tegen", "men", "hem", "iets", "toch", "reeds", "hier", "ons",
-            "die", "der", "zelf", "alleen", "ander", "andere", "onder", "zonder", "echter", "dus",
-            "eens", "heel", "ieder", "alle", "omdat", "wanneer", "zeer", "altijd", "misschien", "eigen",
-            "jullie", "moeten", "mogen", "willen", "kunnen", "zullen", "gaan", "komen", "doen", "maken"
-        )));
+    public void calculateScores(int[] counts, double[] scores) {
+        int maxCount = 0;
+        for (int count : counts) {
+            maxCount = Math.max(maxCount, count);
+        }
         
-        // French stopwords
-        words.put(Language.FRENCH, new HashSet<>(Arrays.asList(
-            "le", "la", "les", "de", "et", "un", "une", "que", "pour", "dans",
-            "ce", "il", "qui", "ne", "sur", "se", "pas", "plus", "par", "je",
-            "avec", "tout", "faire", "son", "mettre", "autre", "on", "mais", "nous", "comme",
-            "ou", "si", "leur", "elle", "peu", "aussi", "mon", "puis", "donc", "votre",
-            "au", "aux", "du", "des", "est", "sont", "ont", "ete", "cette", "ces",
-            "vous", "tu", "ton", "ta", "tes", "mes", "nos", "vos", "ses", "lui",
-            "eux", "cela", "ceci", "ci", "ici", "moi", "toi", "soi", "quel", "quelle",
-            "quoi", "dont", "peut", "fait", "bien", "meme", "entre", "apres", "avant", "sous",
-            "sans", "chez", "vers", "jusque", "depuis", "pendant", "selon", "contre", "tres", "encore",
-            "avoir", "etre", "dit", "dit", "quand", "comment", "pourquoi", "toujours", "jamais", "rien"
-        )));
+        for (int i = 0; i < counts.length; i++) {
+            // No matches found, return equal scores
+            scores[i] = maxCount == 0 ? 0.2 : (double) counts[i] / maxCount;
+        }
+    }
+    
+    /**
+     * Stopword match counts and the scores derived from them.
+     */
+    public static class StopwordMatches {
+        private final int[] counts;
+        private final double[] scores;
         
-        // German stopwords
-        words.put(Language.GERMAN, new HashSet<>(Arrays.asList(
-            "der", "die", "das", "und", "in", "sein", "zu", "haben", "mit", "fur",
-            "nicht", "ich", "auf", "sie", "es", "sich", "ein", "auch", "von", "so",
-            "aber", "bei", "nur", "noch", "werden", "jetzt", "nach", "bis", "wenn", "oder",
-            "aus", "durch", "schon", "dieser", "dann", "unter", "kann", "uber", "mich", "ihm",
-            "den", "dem", "des", "einer", "einem", "einen", "eines", "ist", "sind", "war",
-            "waren", "wird", "wir", "ihr", "ihre", "ihrem", "ihren", "ihrer", "als", "wie",
-            "man", "doch", "weil", "was", "hier", "da", "wo", "wer", "wen", "wem",
-            "sein", "seine", "seinem", "seinen", "seiner", "mein", "meine", "meinem", "meinen", "meiner",
-            "dein", "deine", "deinem", "deinen", "deiner", "uns", "euch", "diese", "dieses", "diesem",
-            "diesen", "viel", "mehr", "sehr", "kein", "keine", "keinem", "keinen", "keiner", "selbst"
-        )));
+        StopwordMatches(int[] counts, double[] scores) {
+            this.counts = counts;
+            this.scores = scores;
+        }
         
-        // Italian stopwords
-        words.put(Language.ITALIAN, new HashSet<>(Arrays.asList(
-            "il", "di", "che", "la", "in", "non", "un", "per", "sono", "una",
-            "ma", "come", "da", "ho", "ci", "questo", "qui", "chi", "mi", "ha",
-            "lei", "si", "lo", "dove", "nella", "sua", "cosa", "tu", "quando", "piu",
-            "anche", "gli", "dei", "delle", "della", "tutto", "fare", "tra", "essere", "molto",
-            "del", "al", "dal", "nel", "sul", "con", "alla", "dalla", "nella", "sulla",
-            "ai", "dai", "nei", "sui", "alle", "dalle", "nelle", "sulle", "gli", "le",
-            "io", "noi", "voi", "loro", "lui", "essa", "esso", "esse", "essi", "mio",
-            "mia", "miei", "mie", "tuo", "tua", "tuoi", "tue", "suo", "suoi", "sue",
-            "nostro", "nostra", "nostri", "nostre", "vostro", "vostra", "vostri", "vostre", "questo", "questa",
-            "questi", "queste", "quello", "quella", "quelli", "quelle", "stato", "stata", "stati", "state"
-        )));
+        public Map<Language, Integer> getCounts() {
+            Map<Language, Integer> matchCounts = new EnumMap<>(Language.class);
+            for (Language lang : LANGUAGES) {
+                matchCounts.put(lang, counts[lang.ordinal()]);
+            }
+            return matchCounts;
+        }
         
-        return words;
+        public Map<Language, Double> getScores() {
+            Map<Language, Double> languageScores = new EnumMap<>(Language.class);
+            for (Language lang : LANGUAGES) {
+                languageScores.put(lang, scores[lang.ordinal()]);
+            }
+            return languageScores;
+        }
     }
 }
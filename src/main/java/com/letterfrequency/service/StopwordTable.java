@@ -0,0 +1,105 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.Tokenizer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only table mapping each stopword to a bitmask of the languages that use it.
+ * Bit i of a mask stands for the language with ordinal i. The words live in one
+ * shared char pool and are found by open addressing, so a lookup can be made
+ * straight from a (char[], offset, length) span without creating a String.
+ * Accents are ignored on both sides, so "f\u00FCr" in a text matches the stopword "fur".
+ */
+final class StopwordTable {
+    private final char[] pool;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] masks;
+    private final int slotMask;
+    private final int maxWordLength;
+
+    StopwordTable(Map<Language, ? extends Collection<String>> stopwords) {
+        // Merge the per-language lists first; sorted for a deterministic layout
+        Map<String, Integer> merged = new TreeMap<>();
+        for (Map.Entry<Language, ? extends Collection<String>> entry : stopwords.entrySet()) {
+            int bit = 1 << entry.getKey().ordinal();
+            for (String word : entry.getValue()) {
+                merged.merge(Tokenizer.foldAccents(word), bit, (a, b) -> a | b);
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(merged.size(), 1) * 2) * 2;
+        int poolSize = merged.keySet().stream().mapToInt(String::length).sum();
+        this.pool = new char[poolSize];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        this.masks = new int[capacity];
+        this.slotMask = capacity - 1;
+        Arrays.fill(lengths, -1);
+
+        int poolOffset = 0;
+        int longest = 0;
+        for (Map.Entry<String, Integer> entry : merged.entrySet()) {
+            String word = entry.getKey();
+            word.getChars(0, word.length(), pool, poolOffset);
+
+            int slot = hash(pool, poolOffset, word.length()) & slotMask;
+            while (lengths[slot] >= 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            offsets[slot] = poolOffset;
+            lengths[slot] = word.length();
+            masks[slot] = entry.getValue();
+            poolOffset += word.length();
+            longest = Math.max(longest, word.length());
+        }
+        this.maxWordLength = longest;
+    }
+
+    int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * Look up the word in chars[offset, offset + length).
+     *
+     * @return Bitmask of the languages having this stopword, 0 if none
+     */
+    int lookup(char[] chars, int offset, int length) {
+        int slot = hash(chars, offset, length) & slotMask;
+        while (lengths[slot] >= 0) {
+            if (lengths[slot] == length && regionMatches(chars, offset, offsets[slot], length)) {
+                return masks[slot];
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return 0;
+    }
+
+    private boolean regionMatches(char[] chars, int offset, int poolOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (unaccented(chars[offset + i]) != pool[poolOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + unaccented(chars[i]);
+        }
+        // Spread the high bits, as HashMap does, since the table is indexed by the low bits
+        return h ^ (h >>> 16);
+    }
+
+    private static char unaccented(char c) {
+        char base = Tokenizer.baseLetter(c);
+        return base != 0 ? base : c;
+    }
+}
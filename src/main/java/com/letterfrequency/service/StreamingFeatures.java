@@ -0,0 +1,256 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.util.Tokenizer;
+import com.letterfrequency.util.WordKey;
+
+/**
+ * Incremental counterpart of TextFeatures for text read in chunks.
+ * Instead of keeping the text and its spans, it updates the letter, bigram and
+ * total counts as characters arrive and hands every finished word and token to
+ * the stopword and Levenshtein services straight away, and adds the hashed n-grams
+ * to per-language log-likelihood sums. Words and bigrams that
+ * straddle a chunk boundary are carried over, so the counts are the same as for
+ * the whole text at once, while memory stays fixed whatever the input size.
+ * Finished instances over consecutive parts of a text can be merged, so the
+ * parts can be counted in parallel.
+ *
+ * <p>The hashed n-grams only have weight in short texts, and a stream only grows,
+ * so they are no longer added once the letter count reaches the given limit.
+ */
+public final class StreamingFeatures {
+    private final StopwordAnalysisService stopwordService;
+    private final LevenshteinAnalysisService levenshteinService;
+    private final HashedNgramModel ngramModel;
+    // Letter count from which the hashed n-grams are not needed
+    private final long ngramLetterLimit;
+
+    private final long[] letterCounts = new long[TextFeatures.ALPHABET_SIZE];
+    private final long[] bigramCounts = new long[TextFeatures.BIGRAM_COUNT];
+    private final int[] stopwordCounts;
+    private final int[] levenshteinMatches;
+    // Table entries are floats, so up to about 10^8 n-grams these sums are exact
+    // and do not depend on how the text was split
+    private final double[] ngramLogLikelihoods;
+    private long ngramCount;
+    private long letterTotal;
+    private long alphabeticTotal;
+    private long accentedTotal;
+    private long charCount;
+    private int firstLetter = -1;
+    private int previousLetter = -1;
+
+    // The word or token in progress. Only as many characters are kept as can still
+    // match; the full length is tracked so longer ones are known not to match.
+    private final char[] word;
+    private int wordLength;
+    private final char[] token;
+    private int tokenLength;
+    private final WordKey probe = new WordKey();
+    // The n-gram context of the word in progress, as kept by HashedNgramModel
+    private long ngramContext;
+    private int ngramContextLength;
+
+    StreamingFeatures(StopwordAnalysisService stopwordService, LevenshteinAnalysisService levenshteinService,
+                      HashedNgramModel ngramModel, long ngramLetterLimit, int languageCount) {
+        this.stopwordService = stopwordService;
+        this.levenshteinService = levenshteinService;
+        this.ngramModel = ngramModel;
+        this.ngramLetterLimit = ngramLetterLimit;
+        this.stopwordCounts = new int[languageCount];
+        this.levenshteinMatches = new int[languageCount];
+        this.ngramLogLikelihoods = new double[languageCount];
+        this.word = new char[stopwordService.getMaxWordLength()];
+        this.token = new char[levenshteinService.getMaxMatchLength()];
+    }
+
+    /**
+     * Add the next chunk of text.
+     */
+    public void accept(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char c = Tokenizer.fold(buffer[i]);
+
+            if (Tokenizer.isWordLetter(c)) {
+                int letter = Tokenizer.baseLetter(c) - 'a';
+                letterCounts[letter]++;
+                letterTotal++;
+                alphabeticTotal++;
+                if (Tokenizer.isAccented(c)) {
+                    accentedTotal++;
+                }
+                if (firstLetter < 0) {
+                    firstLetter = letter;
+                }
+                if (previousLetter >= 0) {
+                    bigramCounts[previousLetter * TextFeatures.ALPHABET_SIZE + letter]++;
+                }
+                previousLetter = letter;
+                if (wordLength < word.length) {
+                    word[wordLength] = c;
+                }
+                wordLength++;
+            } else {
+                if (Tokenizer.isLetter(c)) {
+                    alphabeticTotal++;
+                }
+                endWord();
+            }
+
+            if (letterTotal >= ngramLetterLimit) {
+                ngramContextLength = 0;
+            } else if (Tokenizer.isLetter(c)) {
+                if (ngramContextLength == 0) {
+                    ngramContext = HashedNgramModel.BOUNDARY;
+                    ngramContextLength = 1;
+                }
+                ngramContext = HashedNgramModel.extend(ngramContext, c);
+                ngramContextLength = Math.min(ngramContextLength + 1, HashedNgramModel.MAX_ORDER);
+                ngramCount += ngramModel.add(ngramContext, ngramContextLength, 1, ngramLogLikelihoods);
+            } else {
+                endNgrams();
+            }
+
+            if (Tokenizer.isWhitespace(c)) {
+                endToken();
+            } else {
+                if (tokenLength < token.length) {
+                    token[tokenLength] = c;
+                }
+                tokenLength++;
+            }
+        }
+        charCount += length;
+    }
+
+    /**
+     * Flush the word and token still in progress at the end of the input.
+     */
+    public void finish() {
+        endWord();
+        endToken();
+        endNgrams();
+    }
+
+    /**
+     * Add the counts of the part of the text that directly follows this one.
+     * Both parts must be finished and must split the text at whitespace, so
+     * that no word or token spans them; the bigram joining their letters is counted.
+     */
+    public void merge(StreamingFeatures next) {
+        addCounts(next);
+        if (previousLetter >= 0 && next.firstLetter >= 0) {
+            bigramCounts[previousLetter * TextFeatures.ALPHABET_SIZE + next.firstLetter]++;
+        }
+        if (firstLetter < 0) {
+            firstLetter = next.firstLetter;
+        }
+        if (next.previousLetter >= 0) {
+            previousLetter = next.previousLetter;
+        }
+    }
+
+    /**
+     * Add the counts of a separate, finished text, with no bigram joining the two.
+     */
+    void add(StreamingFeatures other) {
+        addCounts(other);
+        firstLetter = -1;
+        previousLetter = -1;
+    }
+
+    private void addCounts(StreamingFeatures other) {
+        for (int i = 0; i < letterCounts.length; i++) {
+            letterCounts[i] += other.letterCounts[i];
+        }
+        for (int i = 0; i < bigramCounts.length; i++) {
+            bigramCounts[i] += other.bigramCounts[i];
+        }
+        for (int i = 0; i < stopwordCounts.length; i++) {
+            stopwordCounts[i] += other.stopwordCounts[i];
+            levenshteinMatches[i] += other.levenshteinMatches[i];
+            ngramLogLikelihoods[i] += other.ngramLogLikelihoods[i];
+        }
+        ngramCount += other.ngramCount;
+        letterTotal += other.letterTotal;
+        alphabeticTotal += other.alphabeticTotal;
+        accentedTotal += other.accentedTotal;
+        charCount += other.charCount;
+    }
+
+    private void endWord() {
+        if (wordLength > 0 && wordLength <= word.length) {
+            stopwordService.countMatches(word, 0, wordLength, stopwordCounts);
+        }
+        wordLength = 0;
+    }
+
+    private void endToken() {
+        if (tokenLength > 0 && tokenLength <= token.length) {
+            levenshteinService.countMatch(token, 0, tokenLength, probe, levenshteinMatches);
+        }
+        tokenLength = 0;
+    }
+
+    /**
+     * Add the n-grams that end with the boundary after the word in progress.
+     */
+    private void endNgrams() {
+        if (ngramContextLength > 0) {
+            ngramCount += ngramModel.add(HashedNgramModel.extend(ngramContext, HashedNgramModel.BOUNDARY),
+                Math.min(ngramContextLength + 1, HashedNgramModel.MAX_ORDER), 2, ngramLogLikelihoods);
+            ngramContextLength = 0;
+        }
+    }
+
+    long[] letterCounts() {
+        return letterCounts;
+    }
+
+    long[] bigramCounts() {
+        return bigramCounts;
+    }
+
+    int[] stopwordCounts() {
+        return stopwordCounts;
+    }
+
+    int[] levenshteinMatches() {
+        return levenshteinMatches;
+    }
+
+    double[] ngramLogLikelihoods() {
+        return ngramLogLikelihoods;
+    }
+
+    long ngramCount() {
+        return ngramCount;
+    }
+
+    /**
+     * Number of a-z letters read so far.
+     */
+    public long getLetterTotal() {
+        return letterTotal;
+    }
+
+    /**
+     * Number of letters with diacritics read so far, also counted under their base letter.
+     */
+    public long getAccentedTotal() {
+        return accentedTotal;
+    }
+
+    /**
+     * Number of letters of any alphabet read so far, including accented letters.
+     */
+    public long getAlphabeticTotal() {
+        return alphabeticTotal;
+    }
+
+    /**
+     * Number of characters read so far.
+     */
+    public long getCharCount() {
+        return charCount;
+    }
+}
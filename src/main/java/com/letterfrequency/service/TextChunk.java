@@ -0,0 +1,117 @@
+package com.letterfrequency.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of a UTF-8 file that ends just after a whitespace byte. ASCII
+ * whitespace never occurs inside a UTF-8 sequence, so every chunk decodes on its
+ * own and no word or token crosses two chunks. A chunk is memory-mapped and decoded
+ * through a fixed buffer, so counting it takes the same memory whatever its size.
+ */
+final class TextChunk {
+    // Bytes read at a time while looking for the whitespace that ends a chunk
+    private static final int BOUNDARY_PROBE_SIZE = 4096;
+
+    // Characters decoded at a time from a mapped chunk
+    private static final int DECODE_BUFFER_SIZE = 8192;
+
+    private final Path file;
+    private final long start;
+    private final long end;
+
+    private TextChunk(Path file, long start, long end) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Split the file into chunks of about chunkSize bytes.
+     */
+    static List<TextChunk> split(Path file, int chunkSize) throws IOException {
+        List<TextChunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = size - start <= chunkSize ? size : findChunkEnd(channel, start + chunkSize, size);
+                chunks.add(new TextChunk(file, start, end));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    private static long findChunkEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE_SIZE);
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (isWhitespace(probe.get(i))) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Whitespace as matched by the regex class \s.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    /**
+     * Decode the chunk and pass the characters to the sink, one buffer at a time.
+     * Malformed input is replaced, as InputStreamReader does.
+     */
+    void decode(CharSink sink) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+        boolean more = true;
+        while (more) {
+            more = decoder.decode(bytes, chars, true).isOverflow();
+            if (!more) {
+                decoder.flush(chars);
+            }
+            sink.accept(chars.array(), 0, chars.position());
+            chars.clear();
+        }
+    }
+
+    long size() {
+        return end - start;
+    }
+
+    /**
+     * Receives decoded characters; the buffer is reused after the call returns.
+     */
+    interface CharSink {
+        void accept(char[] buffer, int offset, int length);
+    }
+}
@@ -0,0 +1,227 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.util.Tokenizer;
+import java.util.Arrays;
+
+/**
+ * Text features shared by all detection services, extracted in a single linear pass
+ * of the shared Tokenizer, which decides what the letters, words and tokens are.
+ * Holds the lowercased characters, the a-z letter histogram, packed bigram counts,
+ * word spans (runs of a-z letters, accented or not) and token spans (whitespace-delimited)
+ * so that each detector can score without re-scanning the original text. Accented
+ * letters count under their base letter in the histograms, and are also counted apart.
+ * Instances made with extract() are read-only; scratch instances can be refilled
+ * with scan() so a worker thread reuses its buffers from one text to the next.
+ */
+public final class TextFeatures {
+    public static final int ALPHABET_SIZE = 26;
+    public static final int BIGRAM_COUNT = ALPHABET_SIZE * ALPHABET_SIZE;
+
+    private char[] chars;
+    private int length;
+    private final long[] letterCounts = new long[ALPHABET_SIZE];
+    private final long[] bigramCounts = new long[BIGRAM_COUNT];
+    private int letterTotal;
+    private int alphabeticTotal;
+    private int accentedTotal;
+    private int bigramTotal;
+
+    // Spans are stored as start/end pairs into chars
+    private int[] wordSpans = new int[16];
+    private int wordCount;
+    private int[] tokenSpans = new int[16];
+    private int tokenCount;
+
+    // Letter of the last word seen, as bigrams run across word boundaries
+    private int previousLetter;
+    private final Tokenizer.SpanSink spans = new Tokenizer.SpanSink() {
+        @Override
+        public void word(int offset, int length) {
+            addWord(offset, length);
+        }
+
+        @Override
+        public void token(int offset, int length) {
+            addToken(offset, length);
+        }
+    };
+
+    /**
+     * Create an empty, reusable scratch instance.
+     */
+    TextFeatures() {
+        this.chars = new char[0];
+    }
+
+    /**
+     * Extract all features from the given text in one pass.
+     *
+     * @param text The input text to analyze
+     * @return The extracted features
+     */
+    public static TextFeatures extract(CharSequence text) {
+        TextFeatures features = new TextFeatures();
+        features.scan(text);
+        return features;
+    }
+
+    /**
+     * Replace the features with those of the given text, reusing the buffers.
+     */
+    void scan(CharSequence text) {
+        reset(text.length());
+        alphabeticTotal = Tokenizer.scan(text, chars, spans);
+    }
+
+    private void reset(int newLength) {
+        if (chars.length < newLength) {
+            chars = new char[newLength];
+        }
+        length = newLength;
+        Arrays.fill(letterCounts, 0);
+        Arrays.fill(bigramCounts, 0);
+        letterTotal = 0;
+        alphabeticTotal = 0;
+        accentedTotal = 0;
+        bigramTotal = 0;
+        wordCount = 0;
+        tokenCount = 0;
+        previousLetter = -1;
+    }
+
+    /**
+     * Record a word and count its letters and bigrams, the last letter of the
+     * previous word pairing with its first.
+     */
+    private void addWord(int start, int length) {
+        if (wordCount * 2 == wordSpans.length) {
+            wordSpans = Arrays.copyOf(wordSpans, wordSpans.length * 2);
+        }
+        wordSpans[wordCount * 2] = start;
+        wordSpans[wordCount * 2 + 1] = start + length;
+        wordCount++;
+
+        for (int i = start; i < start + length; i++) {
+            char base = Tokenizer.baseLetter(chars[i]);
+            if (base != chars[i]) {
+                accentedTotal++;
+            }
+            int letter = base - 'a';
+            letterCounts[letter]++;
+            if (previousLetter >= 0) {
+                bigramCounts[previousLetter * ALPHABET_SIZE + letter]++;
+            }
+            previousLetter = letter;
+        }
+        letterTotal += length;
+        // Every letter but the very first completes a bigram
+        bigramTotal = letterTotal - 1;
+    }
+
+    private void addToken(int start, int length) {
+        if (tokenCount * 2 == tokenSpans.length) {
+            tokenSpans = Arrays.copyOf(tokenSpans, tokenSpans.length * 2);
+        }
+        tokenSpans[tokenCount * 2] = start;
+        tokenSpans[tokenCount * 2 + 1] = start + length;
+        tokenCount++;
+    }
+
+    /**
+     * Lowercased characters of the text, valid up to getLength(). Shared, must not be modified.
+     */
+    char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Letter histogram indexed by (letter - 'a'), accented letters under their base letter.
+     * Shared, must not be modified.
+     */
+    long[] letterCounts() {
+        return letterCounts;
+    }
+
+    /**
+     * Bigram counts indexed by (c1 - 'a') * 26 + (c2 - 'a'). Shared, must not be modified.
+     */
+    long[] bigramCounts() {
+        return bigramCounts;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getLetterCount(char letter) {
+        return letterCounts[letter - 'a'];
+    }
+
+    public long getBigramCount(char first, char second) {
+        return bigramCounts[(first - 'a') * ALPHABET_SIZE + (second - 'a')];
+    }
+
+    /**
+     * Number of a-z letters in the text, accented or not.
+     */
+    public int getLetterTotal() {
+        return letterTotal;
+    }
+
+    /**
+     * Number of letters with diacritics, such as the e with acute accent, and ligatures.
+     * They are included in the letter total under their base letter.
+     */
+    public int getAccentedTotal() {
+        return accentedTotal;
+    }
+
+    /**
+     * Number of letters of any alphabet in the text, including accented letters.
+     */
+    public int getAlphabeticTotal() {
+        return alphabeticTotal;
+    }
+
+    public int getBigramTotal() {
+        return bigramTotal;
+    }
+
+    /**
+     * Number of words, where a word is a maximal run of a-z letters, accented or not.
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getWordStart(int index) {
+        return wordSpans[index * 2];
+    }
+
+    public int getWordLength(int index) {
+        return wordSpans[index * 2 + 1] - wordSpans[index * 2];
+    }
+
+    public String getWord(int index) {
+        return new String(chars, getWordStart(index), getWordLength(index));
+    }
+
+    /**
+     * Number of tokens, where a token is a maximal run of non-whitespace characters.
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getTokenStart(int index) {
+        return tokenSpans[index * 2];
+    }
+
+    public int getTokenLength(int index) {
+        return tokenSpans[index * 2 + 1] - tokenSpans[index * 2];
+    }
+
+    public String getToken(int index) {
+        return new String(chars, getTokenStart(index), getTokenLength(index));
+    }
+}
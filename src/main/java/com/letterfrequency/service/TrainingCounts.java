@@ -0,0 +1,221 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.util.Tokenizer;
+import com.letterfrequency.util.WordKey;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of one language's training text: letters and bigrams as TextFeatures counts
+ * them, the hashed 1-4-grams, and word frequencies for stopword and common word
+ * candidates. Text arrives in buffers as from a Reader; counts over separate texts
+ * can be merged, so every fork-join task counts into its own instance.
+ *
+ * <p>Memory is fixed whatever the amount of text: at most MAX_TRACKED_WORDS words
+ * are kept, and when the map fills up the rarest words are dropped. The frequent
+ * words that become stopwords and common words are counted exactly unless the text
+ * has a very long tail of rare words.
+ */
+final class TrainingCounts {
+    // Words longer than this are not candidates and are not counted
+    static final int MAX_WORD_LENGTH = 24;
+
+    // Words tracked at most before the rarest are dropped
+    private static final int MAX_TRACKED_WORDS = 100_000;
+
+    private final long[] letterCounts = new long[TextFeatures.ALPHABET_SIZE];
+    private final long[] bigramCounts = new long[TextFeatures.BIGRAM_COUNT];
+    private final HashedNgramModel.Counter ngrams;
+    private final Map<WordKey, WordCount> words = new HashMap<>();
+    private long letterTotal;
+    private long accentedTotal;
+    private long bigramTotal;
+    private long charCount;
+    private int previousLetter = -1;
+
+    // The word in progress, a run of letters of any alphabet
+    private final char[] word = new char[MAX_WORD_LENGTH];
+    private int wordLength;
+    private final WordKey probe = new WordKey();
+
+    TrainingCounts(int ngramTableBits) {
+        this.ngrams = new HashedNgramModel.Counter(ngramTableBits);
+    }
+
+    /**
+     * Add the next buffer of text.
+     */
+    void accept(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char c = Tokenizer.fold(buffer[i]);
+
+            if (Tokenizer.isWordLetter(c)) {
+                int letter = Tokenizer.baseLetter(c) - 'a';
+                letterCounts[letter]++;
+                letterTotal++;
+                if (Tokenizer.isAccented(c)) {
+                    accentedTotal++;
+                }
+                if (previousLetter >= 0) {
+                    bigramCounts[previousLetter * TextFeatures.ALPHABET_SIZE + letter]++;
+                    bigramTotal++;
+                }
+                previousLetter = letter;
+            }
+
+            if (Tokenizer.isLetter(c)) {
+                if (wordLength < word.length) {
+                    word[wordLength] = c;
+                }
+                wordLength++;
+            } else {
+                endWord();
+            }
+            ngrams.accept(c);
+        }
+        charCount += length;
+    }
+
+    /**
+     * Flush the word in progress at the end of a text.
+     */
+    void finish() {
+        endWord();
+        ngrams.finish();
+        previousLetter = -1;
+    }
+
+    private void endWord() {
+        if (wordLength > 0 && wordLength <= word.length) {
+            WordCount count = words.get(probe.set(word, 0, wordLength));
+            if (count == null) {
+                words.put(WordKey.copyOf(word, 0, wordLength), new WordCount(1));
+                pruneIfFull();
+            } else {
+                count.value++;
+            }
+        }
+        wordLength = 0;
+    }
+
+    /**
+     * Add the counts of another finished text.
+     */
+    void merge(TrainingCounts other) {
+        for (int i = 0; i < letterCounts.length; i++) {
+            letterCounts[i] += other.letterCounts[i];
+        }
+        for (int i = 0; i < bigramCounts.length; i++) {
+            bigramCounts[i] += other.bigramCounts[i];
+        }
+        ngrams.merge(other.ngrams);
+        for (Map.Entry<WordKey, WordCount> entry : other.words.entrySet()) {
+            WordCount count = words.get(entry.getKey());
+            if (count == null) {
+                words.put(entry.getKey(), new WordCount(entry.getValue().value));
+            } else {
+                count.value += entry.getValue().value;
+            }
+        }
+        pruneIfFull();
+        letterTotal += other.letterTotal;
+        accentedTotal += other.accentedTotal;
+        bigramTotal += other.bigramTotal;
+        charCount += other.charCount;
+    }
+
+    /**
+     * Drop the rarest words until at most half of MAX_TRACKED_WORDS are left.
+     */
+    private void pruneIfFull() {
+        if (words.size() <= MAX_TRACKED_WORDS) {
+            return;
+        }
+        long threshold = 1;
+        while (words.size() > MAX_TRACKED_WORDS / 2) {
+            Iterator<WordCount> counts = words.values().iterator();
+            while (counts.hasNext()) {
+                if (counts.next().value <= threshold) {
+                    counts.remove();
+                }
+            }
+            threshold *= 2;
+        }
+    }
+
+    /**
+     * The most frequent words, most frequent first, ties in alphabetical order.
+     *
+     * @param unaccented Whether to take only words of a-z letters, with their accents
+     *                   removed and the counts of words that then coincide added up
+     */
+    List<String> topWords(int limit, boolean unaccented) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<WordKey, WordCount> entry : words.entrySet()) {
+            String word = entry.getKey().toString();
+            if (!unaccented) {
+                counts.put(word, entry.getValue().value);
+            } else if (isWordLetters(word)) {
+                counts.merge(Tokenizer.foldAccents(word), entry.getValue().value, Long::sum);
+            }
+        }
+        List<Map.Entry<String, Long>> candidates = new ArrayList<>(counts.entrySet());
+        candidates.sort(Comparator.<Map.Entry<String, Long>>comparingLong(e -> -e.getValue())
+            .thenComparing(Map.Entry::getKey));
+
+        List<String> top = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (int i = 0; i < limit && i < candidates.size(); i++) {
+            top.add(candidates.get(i).getKey());
+        }
+        return top;
+    }
+
+    private static boolean isWordLetters(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Tokenizer.isWordLetter(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long[] letterCounts() {
+        return letterCounts;
+    }
+
+    long[] bigramCounts() {
+        return bigramCounts;
+    }
+
+    HashedNgramModel.Counter ngrams() {
+        return ngrams;
+    }
+
+    long getLetterTotal() {
+        return letterTotal;
+    }
+
+    long getAccentedTotal() {
+        return accentedTotal;
+    }
+
+    long getBigramTotal() {
+        return bigramTotal;
+    }
+
+    long getCharCount() {
+        return charCount;
+    }
+
+    private static final class WordCount {
+        private long value;
+
+        WordCount(long value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.letterfrequency.service;
+
+import com.letterfrequency.util.Tokenizer;
+import com.letterfrequency.util.WordKey;
+import java.util.Arrays;
+
+/**
+ * Features of a window sliding over one document, kept up to date as the window
+ * moves instead of recounted. The document is folded and split into words, tokens
+ * and letter runs once; after that, moving the window adds the characters that
+ * enter it and removes the ones that leave it from the letter and bigram counts,
+ * and adds or removes each word, token and letter run as a whole when it comes to
+ * lie inside the window or stops doing so. Both ends only move forward, so sliding
+ * over the whole document costs time proportional to its length, whatever the
+ * window size.
+ *
+ * <p>Within the window the counts are those TextFeatures and StreamingFeatures
+ * would give for its text, except that a word cut by either end of the window is
+ * left out of the stopword, Levenshtein and hashed n-gram counts.
+ */
+final class WindowFeatures {
+    private final HashedNgramModel ngramModel;
+
+    // The folded document
+    private final char[] chars;
+
+    // Words with their stopword language masks, tokens with the ordinal of their
+    // closest language or -1, and letter runs for the hashed n-grams
+    private final Spans words = new Spans();
+    private final Spans tokens = new Spans();
+    private final Spans letterRuns = new Spans();
+
+    private final long[] letterCounts = new long[TextFeatures.ALPHABET_SIZE];
+    private final long[] bigramCounts = new long[TextFeatures.BIGRAM_COUNT];
+    private final int[] stopwordCounts;
+    private final int[] levenshteinMatches;
+    private final double[] ngramLogLikelihoods;
+    private final double[] runLogLikelihoods;
+    private long ngramCount;
+    private long letterTotal;
+    private long alphabeticTotal;
+    private long accentedTotal;
+
+    // The window is chars[start, end); lastLetter is its last word letter, or -1 if it has none
+    private int start;
+    private int end;
+    private int lastLetter = -1;
+
+    WindowFeatures(CharSequence text, StopwordAnalysisService stopwordService,
+                   LevenshteinAnalysisService levenshteinService, HashedNgramModel ngramModel, int languageCount) {
+        this.ngramModel = ngramModel;
+        this.stopwordCounts = new int[languageCount];
+        this.levenshteinMatches = new int[languageCount];
+        this.ngramLogLikelihoods = new double[languageCount];
+        this.runLogLikelihoods = new double[languageCount];
+        this.chars = new char[text.length()];
+
+        WordKey probe = new WordKey();
+        Tokenizer.scan(text, chars, new Tokenizer.SpanSink() {
+            @Override
+            public void word(int offset, int length) {
+                words.add(offset, offset + length, stopwordService.matchMask(chars, offset, length));
+            }
+
+            @Override
+            public void token(int offset, int length) {
+                int language = -1;
+                if (length >= 3) {
+                    LevenshteinAnalysisService.ClosestMatch match =
+                        levenshteinService.findClosestMatch(chars, offset, length, probe);
+                    if (match.getLanguage() != null) {
+                        language = match.getLanguage().ordinal();
+                    }
+                }
+                tokens.add(offset, offset + length, language);
+            }
+        });
+
+        int runStart = -1;
+        for (int i = 0; i <= chars.length; i++) {
+            boolean letter = i < chars.length && Tokenizer.isLetter(chars[i]);
+            if (letter && runStart < 0) {
+                runStart = i;
+            } else if (!letter && runStart >= 0) {
+                letterRuns.add(runStart, i, 0);
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Number of characters in the document.
+     */
+    int getLength() {
+        return chars.length;
+    }
+
+    /**
+     * The folded document, shared and not to be modified.
+     */
+    char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Move the window to chars[newStart, newEnd). Neither end may move backward.
+     */
+    void slideTo(int newStart, int newEnd) {
+        if (newStart < start || newEnd < end || newStart > newEnd || newEnd > chars.length) {
+            throw new IllegalArgumentException("Cannot slide the window [" + start + ", " + end + ") to ["
+                + newStart + ", " + newEnd + ")");
+        }
+        while (end < newEnd) {
+            addChar(end++);
+        }
+        while (start < newStart) {
+            removeChar(start++);
+        }
+
+        // Spans leave before others enter, so that entering spans cut by the start are passed over
+        while (words.leave(start)) {
+            addStopwords(words.values[words.first - 1], -1);
+        }
+        while (words.enter(start, end)) {
+            addStopwords(words.values[words.next - 1], 1);
+        }
+        while (tokens.leave(start)) {
+            addToken(tokens.values[tokens.first - 1], -1);
+        }
+        while (tokens.enter(start, end)) {
+            addToken(tokens.values[tokens.next - 1], 1);
+        }
+        while (letterRuns.leave(start)) {
+            addNgrams(letterRuns.first - 1, -1);
+        }
+        while (letterRuns.enter(start, end)) {
+            addNgrams(letterRuns.next - 1, 1);
+        }
+    }
+
+    private void addChar(int i) {
+        char c = chars[i];
+        if (Tokenizer.isLetter(c)) {
+            alphabeticTotal++;
+        }
+        if (!Tokenizer.isWordLetter(c)) {
+            return;
+        }
+        int letter = Tokenizer.baseLetter(c) - 'a';
+        letterCounts[letter]++;
+        letterTotal++;
+        if (Tokenizer.isAccented(c)) {
+            accentedTotal++;
+        }
+        if (lastLetter >= 0) {
+            bigramCounts[letterAt(lastLetter) * TextFeatures.ALPHABET_SIZE + letter]++;
+        }
+        lastLetter = i;
+    }
+
+    /**
+     * Remove the first character of the window, with the bigram it starts.
+     */
+    private void removeChar(int i) {
+        char c = chars[i];
+        if (Tokenizer.isLetter(c)) {
+            alphabeticTotal--;
+        }
+        if (!Tokenizer.isWordLetter(c)) {
+            return;
+        }
+        int letter = letterAt(i);
+        letterCounts[letter]--;
+        letterTotal--;
+        if (Tokenizer.isAccented(c)) {
+            accentedTotal--;
+        }
+        if (i == lastLetter) {
+            lastLetter = -1;
+            return;
+        }
+        // Skipped characters leave next without a search, so each is passed once
+        int next = i + 1;
+        while (!Tokenizer.isWordLetter(chars[next])) {
+            next++;
+        }
+        bigramCounts[letter * TextFeatures.ALPHABET_SIZE + letterAt(next)]--;
+    }
+
+    private int letterAt(int i) {
+        return Tokenizer.baseLetter(chars[i]) - 'a';
+    }
+
+    private void addStopwords(int mask, int sign) {
+        while (mask != 0) {
+            stopwordCounts[Integer.numberOfTrailingZeros(mask)] += sign;
+            mask &= mask - 1;
+        }
+    }
+
+    private void addToken(int language, int sign) {
+        if (language >= 0) {
+            levenshteinMatches[language] += sign;
+        }
+    }
+
+    /**
+     * Add or remove the n-grams of a letter run. Table entries are floats, so as in
+     * StreamingFeatures the sums are exact, and a run that leaves is taken out exactly.
+     */
+    private void addNgrams(int run, int sign) {
+        Arrays.fill(runLogLikelihoods, 0.0);
+        int runStart = letterRuns.starts[run];
+        int count = ngramModel.score(chars, runStart, letterRuns.ends[run] - runStart, runLogLikelihoods);
+        for (int lang = 0; lang < ngramLogLikelihoods.length; lang++) {
+            ngramLogLikelihoods[lang] += sign * runLogLikelihoods[lang];
+        }
+        ngramCount += sign * count;
+    }
+
+    long[] letterCounts() {
+        return letterCounts;
+    }
+
+    long[] bigramCounts() {
+        return bigramCounts;
+    }
+
+    int[] stopwordCounts() {
+        return stopwordCounts;
+    }
+
+    int[] levenshteinMatches() {
+        return levenshteinMatches;
+    }
+
+    double[] ngramLogLikelihoods() {
+        return ngramLogLikelihoods;
+    }
+
+    long ngramCount() {
+        return ngramCount;
+    }
+
+    /**
+     * Number of a-z letters in the window, accented or not.
+     */
+    long getLetterTotal() {
+        return letterTotal;
+    }
+
+    /**
+     * Number of letters with diacritics in the window.
+     */
+    long getAccentedTotal() {
+        return accentedTotal;
+    }
+
+    /**
+     * Number of letters of any alphabet in the window.
+     */
+    long getAlphabeticTotal() {
+        return alphabeticTotal;
+    }
+
+    /**
+     * Spans of one kind in document order, none overlapping another, with a value
+     * each. The spans inside the window are those from first to next.
+     */
+    private static final class Spans {
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] values = new int[16];
+        int count;
+        int first;
+        int next;
+
+        void add(int start, int end, int value) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            values[count] = value;
+            count++;
+        }
+
+        /**
+         * Take the next span that now ends inside the window into it.
+         *
+         * @return Whether a span entered, the one before next; spans that already
+         *         began before the window are passed over
+         */
+        boolean enter(int windowStart, int windowEnd) {
+            while (next < count && ends[next] <= windowEnd) {
+                next++;
+                if (starts[next - 1] >= windowStart) {
+                    return true;
+                }
+                first = next;
+            }
+            return false;
+        }
+
+        /**
+         * Drop the first span inside the window if it now begins before it.
+         *
+         * @return Whether a span left, the one before first
+         */
+        boolean leave(int windowStart) {
+            if (first < next && starts[first] < windowStart) {
+                first++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.letterfrequency.ui;
+
+import com.letterfrequency.metrics.Detector;
+import com.letterfrequency.model.Language;
+import com.letterfrequency.service.CombinedLanguageDetectionService;
+import com.letterfrequency.service.StreamingFeatures;
+import com.letterfrequency.service.TextFeatures;
+import com.letterfrequency.util.Json;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless classification for pipelines. Every file, every file below a directory,
+ * or every line of standard input is one document. Documents are classified on a
+ * pool of worker threads and each result is written as one JSON line, with the
+ * combined and per-detector scores, in input or completion order. A summary with
+ * the throughput goes to standard error at the end.
+ *
+ * <p>Files and directory trees are read lazily, and only a bounded number of
+ * documents is in flight at any time, so millions of files take no more memory
+ * than a few. Files over STREAMED_FILE_SIZE are streamed through the detectors
+ * instead of read whole; their lines have the combined scores only.
+ */
+public class BatchCommand {
+    private static final String USAGE = "Usage: detect [--order input|completion] [--threads n] [--output file]"
+        + " (- | file-or-directory...)";
+
+    // Files larger than this are streamed and reported without per-detector scores
+    private static final long STREAMED_FILE_SIZE = 16L * 1024 * 1024;
+
+    // Documents submitted but not yet written, per worker thread
+    private static final int IN_FLIGHT_PER_THREAD = 64;
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int STREAM_CHUNK_SIZE = 8192;
+
+    private final CombinedLanguageDetectionService service;
+
+    public BatchCommand() {
+        this(new CombinedLanguageDetectionService());
+    }
+
+    public BatchCommand(CombinedLanguageDetectionService service) {
+        this.service = service;
+    }
+
+    /**
+     * @param args Options followed by files, directories, or - for standard input
+     * @return Process exit status: 0 if every document was classified, 1 if some failed
+     */
+    public int run(String[] args) {
+        boolean inputOrder = true;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output = null;
+        List<String> sources = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--order":
+                        String order = optionValue(args, ++i);
+                        if (!order.equals("input") && !order.equals("completion")) {
+                            throw new IllegalArgumentException("Order must be input or completion: " + order);
+                        }
+                        inputOrder = order.equals("input");
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(optionValue(args, ++i));
+                        if (threads <= 0) {
+                            throw new IllegalArgumentException("Threads must be positive: " + threads);
+                        }
+                        break;
+                    case "--output":
+                        output = Paths.get(optionValue(args, ++i));
+                        break;
+                    default:
+                        sources.add(args[i]);
+                }
+            }
+            if (sources.isEmpty()) {
+                throw new IllegalArgumentException("No input given");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            OutputStream out = output == null ? System.out : Files.newOutputStream(output);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                    OUTPUT_BUFFER_SIZE);
+                Summary summary = classifyAll(sources, writer, inputOrder, threads);
+                writer.flush();
+                summary.print();
+                return summary.failed.get() == 0 ? 0 : 1;
+            } finally {
+                // Standard output belongs to the caller and stays open
+                if (output != null) {
+                    out.close();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Batch detection failed: " + e);
+            return 1;
+        }
+    }
+
+    private static String optionValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private Summary classifyAll(List<String> sources, Writer writer, boolean inputOrder, int threads)
+            throws IOException {
+        Summary summary = new Summary();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ResultWriter results = new ResultWriter(writer, inputOrder, new Semaphore(threads * IN_FLIGHT_PER_THREAD));
+        try {
+            long sequence = 0;
+            for (String source : sources) {
+                if (source.equals("-")) {
+                    BufferedReader lines = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                    long lineNumber = 0;
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        long number = ++lineNumber;
+                        String text = line;
+                        submit(workers, results, summary, sequence++, lineId(number),
+                            () -> classifyLine(number, text, summary));
+                    }
+                    continue;
+                }
+                sequence = submitTree(Paths.get(source), workers, results, summary, sequence);
+            }
+        } finally {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        results.rethrow();
+        summary.finish();
+        return summary;
+    }
+
+    /**
+     * Submit every regular file below root, or root itself if it is one, in the order
+     * the tree is walked. A file or directory that cannot be read gets an error line
+     * of its own, and the walk goes on with the rest of the tree.
+     *
+     * @return The sequence number after the last one used
+     */
+    private long submitTree(Path root, ExecutorService workers, ResultWriter results, Summary summary,
+                            long firstSequence) throws IOException {
+        long[] sequence = {firstSequence};
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                // Links are followed to regular files, as Files.isRegularFile does
+                if (Files.isRegularFile(file)) {
+                    submit(workers, results, summary, sequence[0]++, sourceId(file),
+                        () -> classifyFile(file, summary));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                fail(results, summary, sequence[0]++, file, e);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+                // The directory could not be listed to the end; the files before the failure were submitted
+                if (e != null) {
+                    fail(results, summary, sequence[0]++, directory, e);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sequence[0];
+    }
+
+    /**
+     * Classify a document on the pool, waiting first while too many results are pending.
+     * Every document produces exactly one line, even if classification throws an Error,
+     * so input order never stalls on a failure. Error lines start with the document's id
+     * like its result would.
+     *
+     * @param id Start of the document's result object, from sourceId or lineId
+     */
+    private static void submit(ExecutorService workers, ResultWriter results, Summary summary,
+                               long sequence, String id, Classification task) {
+        results.inFlight.acquireUninterruptibly();
+        workers.execute(() -> {
+            String line = errorLine(id, "Classification failed");
+            try {
+                line = task.classify();
+            } catch (Throwable e) {
+                // Errors such as StackOverflowError or OutOfMemoryError fail this document only
+                summary.failed.incrementAndGet();
+                line = errorLine(id, e.toString());
+            } finally {
+                results.complete(sequence, line);
+            }
+        });
+    }
+
+    /**
+     * Write an error line for a source that could not be read, in its place in the order.
+     */
+    private static void fail(ResultWriter results, Summary summary, long sequence, Path source, IOException e) {
+        summary.failed.incrementAndGet();
+        results.inFlight.acquireUninterruptibly();
+        results.complete(sequence, errorLine(sourceId(source), e.toString()));
+    }
+
+    /**
+     * Start of the result object of a file, up to its source field.
+     */
+    private static String sourceId(Path file) {
+        StringBuilder json = new StringBuilder("{\"source\":");
+        Json.writeString(json, file.toString());
+        return json.toString();
+    }
+
+    /**
+     * Start of the result object of a line of standard input, up to its line field.
+     */
+    private static String lineId(long lineNumber) {
+        return "{\"line\":" + lineNumber;
+    }
+
+    private static String errorLine(String id, String message) {
+        StringBuilder json = new StringBuilder(id).append(",\"error\":");
+        Json.writeString(json, message);
+        return json.append('}').toString();
+    }
+
+    private String classifyLine(long lineNumber, String text, Summary summary) {
+        StringBuilder json = new StringBuilder(lineId(lineNumber));
+        TextFeatures features = TextFeatures.extract(text);
+        appendDetectorScores(json, features.getLength(), service.getDetectorScores(features));
+        summary.add(features.getLength());
+        return json.append('}').toString();
+    }
+
+    private String classifyFile(Path file, Summary summary) {
+        StringBuilder json = new StringBuilder(sourceId(file));
+        try {
+            if (Files.size(file) > STREAMED_FILE_SIZE) {
+                StreamingFeatures features = service.newStreamingFeatures();
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    char[] buffer = new char[STREAM_CHUNK_SIZE];
+                    int read;
+                    while ((read = reader.read(buffer)) != -1) {
+                        features.accept(buffer, 0, read);
+                    }
+                }
+                features.finish();
+                Map<Language, Double> scores = service.getLanguageScores(features);
+                json.append(",\"chars\":").append(features.getCharCount());
+                appendResult(json, scores);
+                summary.add(features.getCharCount());
+            } else {
+                // Malformed UTF-8 is replaced, as in the streamed case
+                TextFeatures features = TextFeatures.extract(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                appendDetectorScores(json, features.getLength(), service.getDetectorScores(features));
+                summary.add(features.getLength());
+            }
+        } catch (IOException | RuntimeException e) {
+            summary.failed.incrementAndGet();
+            return errorLine(sourceId(file), e.toString());
+        }
+        return json.append('}').toString();
+    }
+
+    private void appendDetectorScores(StringBuilder json, long chars, Map<Detector, Map<Language, Double>> scores) {
+        json.append(",\"chars\":").append(chars);
+        appendResult(json, scores.get(Detector.COMBINED));
+        json.append(",\"detectors\":{");
+        boolean first = true;
+        for (Map.Entry<Detector, Map<Language, Double>> entry : scores.entrySet()) {
+            if (entry.getKey() == Detector.COMBINED) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.writeString(json, entry.getKey().getMetricName());
+            json.append(':');
+            appendScores(json, entry.getValue());
+        }
+        json.append('}');
+    }
+
+    /**
+     * Append the best language and the combined scores as fields of the open object.
+     */
+    private void appendResult(StringBuilder json, Map<Language, Double> scores) {
+        json.append(",\"language\":");
+        Json.writeString(json, service.selectLanguage(scores).getDisplayName());
+        json.append(",\"scores\":");
+        appendScores(json, scores);
+    }
+
+    private static void appendScores(StringBuilder json, Map<Language, Double> scores) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<Language, Double> entry : scores.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.writeString(json, entry.getKey().getDisplayName());
+            json.append(':');
+            Json.writeNumber(json, entry.getValue());
+        }
+        json.append('}');
+    }
+
+    private interface Classification {
+        String classify();
+    }
+
+    /**
+     * Writes result lines as workers complete them. In input order, a line that
+     * arrives early waits until every line before it has been written; the in-flight
+     * limit bounds how many can wait.
+     */
+    private static final class ResultWriter {
+        private final Writer writer;
+        private final boolean inputOrder;
+        private final Semaphore inFlight;
+        private final Map<Long, String> pending = new HashMap<>();
+        private long next;
+        private IOException failure;
+
+        ResultWriter(Writer writer, boolean inputOrder, Semaphore inFlight) {
+            this.writer = writer;
+            this.inputOrder = inputOrder;
+            this.inFlight = inFlight;
+        }
+
+        synchronized void complete(long sequence, String line) {
+            if (!inputOrder) {
+                write(line);
+                return;
+            }
+            pending.put(sequence, line);
+            String ready;
+            while ((ready = pending.remove(next)) != null) {
+                write(ready);
+                next++;
+            }
+        }
+
+        private void write(String line) {
+            try {
+                if (failure == null) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                // Keep draining so the producer is not blocked; the error is reported at the end
+                failure = e;
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        synchronized void rethrow() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static final class Summary {
+        private final long start = System.nanoTime();
+        private final AtomicLong documents = new AtomicLong();
+        private final AtomicLong chars = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private long elapsedNanos;
+
+        void add(long documentChars) {
+            documents.incrementAndGet();
+            chars.addAndGet(documentChars);
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        void print() {
+            double seconds = Math.max(elapsedNanos / 1e9, 1e-9);
+            System.err.printf("Classified %,d documents (%,d failed), %,d characters in %.2f s: %.1f docs/s, %.1f M chars/s%n",
+                documents.get(), failed.get(), chars.get(), seconds,
+                documents.get() / seconds, chars.get() / 1e6 / seconds);
+        }
+    }
+}
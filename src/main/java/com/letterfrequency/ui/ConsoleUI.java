@@ -1,29 +1,35 @@
 package com.letterfrequency.ui;
 
+import com.letterfrequency.metrics.Detector;
 import com.letterfrequency.model.Language;
 import com.letterfrequency.service.CombinedLanguageDetectionService;
+import com.letterfrequency.service.DetectionContext;
 import com.letterfrequency.service.FrequencyAnalysisService;
-import com.letterfrequency.service.IndexOfCoincidenceService;
-import com.letterfrequency.service.LanguageDetectionService;
-import com.letterfrequency.service.LevenshteinAnalysisService;
-import com.letterfrequency.service.NgramAnalysisService;
-import com.letterfrequency.service.StopwordAnalysisService;
+import com.letterfrequency.service.TextFeatures;
 import com.letterfrequency.util.TextValidator;
+import com.letterfrequency.util.Tokenizer;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Scanner;
 
 public class ConsoleUI {
     private final Scanner scanner;
-    private final LanguageDetectionService languageService;
+    private final CombinedLanguageDetectionService languageService;
     private static final String RESET = "\u001B[0m";
     private static final String RED = "\u001B[31m";
     private static final String YELLOW = "\u001B[33m";
     private static final String GREEN = "\u001B[32m";
     
     public ConsoleUI() {
+        this(new CombinedLanguageDetectionService());
+    }
+    
+    /**
+     * @param languageService Service to detect with; registering its metrics is up to the caller
+     */
+    public ConsoleUI(CombinedLanguageDetectionService languageService) {
         this.scanner = new Scanner(System.in);
-        this.languageService = new CombinedLanguageDetectionService();
+        this.languageService = languageService;
     }
     
     public void start() {
@@ -34,10 +40,12 @@ public class ConsoleUI {
             return;
         }
         
-        Map<Language, Double> scores = languageService.getLanguageScores(text);
-        Language detectedLanguage = languageService.detectLanguage(text);
+        // One pass runs every detector; the context keeps the features, each detector's
+        // scores and the combined result for the tables below
+        DetectionContext context = new DetectionContext();
+        languageService.detectLanguage(text, context);
         
-        displayResults(text, scores, detectedLanguage);
+        displayResults(context);
     }
     
     private String getUserInput() {
@@ -56,7 +64,7 @@ public class ConsoleUI {
             previousLine = currentLine;
         }
         
-        return textBuilder.toString().toLowerCase();
+        return Tokenizer.fold(textBuilder);
     }
     
     private boolean validateText(String text) {
@@ -70,73 +78,67 @@ public class ConsoleUI {
         return true;
     }
     
-    private void displayResults(String text, Map<Language, Double> scores, Language bestMatch) {
-        // Get individual scores from all services
-        FrequencyAnalysisService freqService = new FrequencyAnalysisService();
-        LevenshteinAnalysisService levService = new LevenshteinAnalysisService();
-        IndexOfCoincidenceService icService = new IndexOfCoincidenceService();
-        NgramAnalysisService ngramService = new NgramAnalysisService();
-        StopwordAnalysisService stopwordService = new StopwordAnalysisService();
-        
-        Map<Language, Double> freqScores = freqService.getLanguageScores(text);
-        Map<Language, Double> levScores = levService.getLanguageScores(text);
-        Map<Language, Double> icScores = icService.getLanguageScores(text);
-        Map<Language, Double> ngramScores = ngramService.getLanguageScores(text);
-        Map<Language, Double> stopwordScores = stopwordService.getLanguageScores(text);
+    private void displayResults(DetectionContext context) {
+        TextFeatures features = context.getFeatures();
+        Language bestMatch = context.getLanguage();
+        FrequencyAnalysisService freqService = languageService.getFrequencyService();
         
-        double calculatedIC = icService.calculateIC(text);
-        Map<Language, Integer> stopwordCounts = stopwordService.getStopwordMatchCounts(text);
+        double calculatedIC = languageService.getIcService().calculateIC(features);
+        Map<Language, Integer> stopwordCounts = new EnumMap<>(Language.class);
+        for (Language lang : Language.values()) {
+            stopwordCounts.put(lang, context.getStopwordMatches(lang));
+        }
 
         // Display text statistics
-        int charCount = text.replaceAll("[^a-zA-Z]", "").length();
-        int wordCount = text.split("\\s+").length;
+        int charCount = features.getLetterTotal();
+        int wordCount = features.getTokenCount();
         System.out.printf("\nText Statistics: %d characters, %d words%n", charCount, wordCount);
         System.out.printf("Calculated Index of Coincidence: %.4f%n", calculatedIC);
 
         // Display language detection results with all methods
         System.out.println("\nLanguage Detection Results:");
-        System.out.println("+---------------+-----------+-----------+-----------+-----------+-----------+-----------+");
-        System.out.println("| Language      | Frequency |  N-grams  | Stopwords |    IC     |Levenshtein| Combined  |");
-        System.out.println("+---------------+-----------+-----------+-----------+-----------+-----------+-----------+");
+        System.out.println("+---------------+-----------+-----------+-----------+-----------+-----------+-----------+-----------+");
+        System.out.println("| Language      | Frequency |  N-grams  | Stopwords |    IC     |Levenshtein| 1-4-grams | Combined  |");
+        System.out.println("+---------------+-----------+-----------+-----------+-----------+-----------+-----------+-----------+");
         
         // Convert scores to percentages where higher is better
         Map<Language, Double> displayScores = new EnumMap<>(Language.class);
-        scores.forEach((lang, score) -> {
+        context.getScores().forEach((lang, score) -> {
             displayScores.put(lang, score * 100);
         });
         
-        // Find max frequency score for normalization (lower is better, so we invert)
-        double maxFreqScore = freqScores.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
-        
         displayScores.entrySet().stream()
             .sorted(Map.Entry.<Language, Double>comparingByValue().reversed())
             .forEach(entry -> {
                 Language lang = entry.getKey();
                 String marker = lang == bestMatch ? " *" : "";
                 
-                // Convert frequency score (lower is better) to percentage (higher is better)
-                double freqPercentage = (1 - freqScores.get(lang) / maxFreqScore) * 100;
+                // Frequency score (normalized as for weighting, higher is better)
+                double freqPercentage = context.getScore(Detector.FREQUENCY, lang) * 100;
                 // N-gram score (higher is better)
-                double ngramPercentage = ngramScores.get(lang) * 100;
+                double ngramPercentage = context.getScore(Detector.NGRAM, lang) * 100;
                 // Stopword score (higher is better)
-                double stopwordPercentage = stopwordScores.get(lang) * 100;
+                double stopwordPercentage = context.getScore(Detector.STOPWORD, lang) * 100;
                 // IC score (higher is better)
-                double icPercentage = icScores.get(lang) * 100;
+                double icPercentage = context.getScore(Detector.INDEX_OF_COINCIDENCE, lang) * 100;
                 // Levenshtein score (higher is better)
-                double levPercentage = levScores.get(lang) * 100;
+                double levPercentage = context.getScore(Detector.LEVENSHTEIN, lang) * 100;
+                // Hashed 1-4-gram score (higher is better)
+                double hashedNgramPercentage = context.getScore(Detector.HASHED_NGRAM, lang) * 100;
                 
-                System.out.printf("| %-13s | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%%|%s%n",
+                System.out.printf("| %-13s | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%% | %8.2f%%|%s%n",
                     lang.getDisplayName(),
                     freqPercentage,
                     ngramPercentage,
                     stopwordPercentage,
                     icPercentage,
                     levPercentage,
+                    hashedNgramPercentage,
                     entry.getValue(),
                     marker);
             });
         
-        System.out.println("+---------------+-----------+-----------+-----------+-----------+-----------+-----------+");
+        System.out.println("+---------------+-----------+-----------+-----------+-----------+-----------+-----------+-----------+");
         System.out.println("* = Best Match");
         
         // Display stopword match counts
@@ -148,7 +150,7 @@ public class ConsoleUI {
             });
 
         // Display letter frequencies
-        Map<Character, Double> inputFrequencies = freqService.calculateFrequencies(text);
+        Map<Character, Double> inputFrequencies = freqService.calculateFrequencies(features);
         Map<Language, Map<Character, Double>> standardFrequencies = freqService.getStandardFrequencies();
 
         System.out.println("\nLetter Frequencies Comparison:");
@@ -0,0 +1,63 @@
+package com.letterfrequency.ui;
+
+import com.letterfrequency.profile.ProfileWriter;
+import com.letterfrequency.service.ProfileTrainingService;
+import com.letterfrequency.service.ProfileTrainingService.TrainingResult;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Command line front end of ProfileTrainingService: trains profiles from a corpus
+ * directory, writes them to a profile file and prints the time of every phase.
+ */
+public class TrainingCommand {
+    private static final String USAGE = "Usage: train <corpus-directory> <output-file> [table-bits]";
+
+    /**
+     * @param args Corpus directory, output file and optionally the n-gram table bits
+     * @return Process exit status
+     */
+    public int run(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path corpus = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        try {
+            int tableBits = args.length == 3 ? Integer.parseInt(args[2]) : ProfileTrainingService.DEFAULT_NGRAM_TABLE_BITS;
+            TrainingResult result = new ProfileTrainingService(tableBits).train(corpus);
+
+            long start = System.nanoTime();
+            ProfileWriter.write(result.getProfiles(), output);
+            Duration writeTime = Duration.ofNanos(System.nanoTime() - start);
+
+            System.out.printf("Trained %d languages from %d files, %.1f MB, %,d characters%n",
+                result.getProfiles().getAll().size(), result.getFileCount(),
+                result.getByteCount() / 1e6, result.getCharCount());
+            for (Map.Entry<String, Duration> phase : result.getPhaseTimes().entrySet()) {
+                printPhase(phase.getKey(), phase.getValue());
+            }
+            printPhase("write", writeTime);
+            Duration countTime = result.getPhaseTimes().get("count");
+            System.out.printf("Counting throughput: %.1f MB/s%n",
+                result.getByteCount() / 1e6 / Math.max(countTime.toNanos() / 1e9, 1e-9));
+            System.out.println("Profiles written to " + output);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Training failed: " + e);
+            return 1;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+    }
+
+    private static void printPhase(String phase, Duration time) {
+        System.out.printf("  %-6s %9.3f s%n", phase, time.toNanos() / 1e9);
+    }
+}
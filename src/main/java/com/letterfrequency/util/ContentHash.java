@@ -0,0 +1,153 @@
+package com.letterfrequency.util;
+
+/**
+ * 128-bit hash of a text, for use as a cache key in place of the text itself.
+ * The mixing follows MurmurHash3 x64_128, taking the text eight chars at a time.
+ * Two different texts get the same key with probability around 2^-128, so a
+ * matching key is treated as matching text; the length is kept as an extra check.
+ */
+public final class ContentHash {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final long high;
+    private final long low;
+    private final int length;
+
+    private ContentHash(long high, long low, int length) {
+        this.high = high;
+        this.low = low;
+        this.length = length;
+    }
+
+    /**
+     * Hash of chars[offset, offset + length).
+     */
+    public static ContentHash of(char[] chars, int offset, int length) {
+        long h1 = 0;
+        long h2 = 0;
+        int blockEnd = offset + (length & ~7);
+        for (int i = offset; i < blockEnd; i += 8) {
+            long k1 = pack(chars[i], chars[i + 1], chars[i + 2], chars[i + 3]);
+            long k2 = pack(chars[i + 4], chars[i + 5], chars[i + 6], chars[i + 7]);
+            h1 = mixBlock1(h1, h2, k1);
+            h2 = mixBlock2(h1, h2, k2);
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = blockEnd; i < offset + length; i++) {
+            int position = i - blockEnd;
+            if (position < 4) {
+                k1 |= (long) chars[i] << (16 * position);
+            } else {
+                k2 |= (long) chars[i] << (16 * (position - 4));
+            }
+        }
+        return finish(h1, h2, k1, k2, length);
+    }
+
+    /**
+     * Hash of the text with every char passed through Tokenizer.fold(char), as the
+     * detectors see it, without making a folded copy. Equal to of() over the folded chars.
+     */
+    public static ContentHash ofLowerCase(CharSequence text) {
+        int length = text.length();
+        long h1 = 0;
+        long h2 = 0;
+        int blockEnd = length & ~7;
+        for (int i = 0; i < blockEnd; i += 8) {
+            long k1 = pack(lower(text, i), lower(text, i + 1), lower(text, i + 2), lower(text, i + 3));
+            long k2 = pack(lower(text, i + 4), lower(text, i + 5), lower(text, i + 6), lower(text, i + 7));
+            h1 = mixBlock1(h1, h2, k1);
+            h2 = mixBlock2(h1, h2, k2);
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = blockEnd; i < length; i++) {
+            int position = i - blockEnd;
+            if (position < 4) {
+                k1 |= (long) lower(text, i) << (16 * position);
+            } else {
+                k2 |= (long) lower(text, i) << (16 * (position - 4));
+            }
+        }
+        return finish(h1, h2, k1, k2, length);
+    }
+
+    private static char lower(CharSequence text, int index) {
+        return Tokenizer.fold(text.charAt(index));
+    }
+
+    private static long pack(char c0, char c1, char c2, char c3) {
+        return c0 | (long) c1 << 16 | (long) c2 << 32 | (long) c3 << 48;
+    }
+
+    private static long mixBlock1(long h1, long h2, long k1) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        return h1 * 5 + 0x52dce729;
+    }
+
+    private static long mixBlock2(long h1, long h2, long k2) {
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        return h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static ContentHash finish(long h1, long h2, long k1, long k2, int length) {
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new ContentHash(h1, h2, length);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentHash)) {
+            return false;
+        }
+        ContentHash other = (ContentHash) o;
+        return high == other.high && low == other.low && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) high;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
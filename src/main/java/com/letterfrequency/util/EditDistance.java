@@ -0,0 +1,206 @@
+package com.letterfrequency.util;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein distance kernel shared by the fuzzy word matchers.
+ * Uses a rolling-row dynamic program instead of a full matrix, and a bit-parallel
+ * (Myers/Hyyrö) algorithm for precompiled patterns of up to 64 characters.
+ * Bounded variants give up as soon as the distance is known to exceed a limit.
+ */
+public final class EditDistance {
+    private static final int WORD_BITS = 64;
+
+    private EditDistance() {
+    }
+
+    /**
+     * Calculate the Levenshtein distance between two words.
+     */
+    public static int distance(CharSequence word1, CharSequence word2) {
+        return distance(word1, word2, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Calculate the Levenshtein distance between two words, giving up early once it exceeds maxDistance.
+     *
+     * @return The distance, or maxDistance + 1 if it is larger than maxDistance
+     */
+    public static int distance(CharSequence word1, CharSequence word2, int maxDistance) {
+        return boundedDistance(toChars(word1), 0, word1.length(), toChars(word2), 0, word2.length(), maxDistance);
+    }
+
+    /**
+     * Precompile a word so it can be compared against many others with the bit-parallel kernel.
+     */
+    public static Pattern compile(CharSequence word) {
+        return new Pattern(toChars(word));
+    }
+
+    private static char[] toChars(CharSequence word) {
+        char[] chars = new char[word.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = word.charAt(i);
+        }
+        return chars;
+    }
+
+    /**
+     * Rolling-row dynamic program with an early cutoff: the smallest value of a row never
+     * decreases in the next row, so once a whole row exceeds maxDistance the final distance does too.
+     */
+    private static int boundedDistance(char[] a, int aOffset, int aLength,
+                                       char[] b, int bOffset, int bLength, int maxDistance) {
+        if (Math.abs(aLength - bLength) > maxDistance) {
+            return maxDistance + 1;
+        }
+        // Keep the rows as short as possible
+        if (bLength > aLength) {
+            return boundedDistance(b, bOffset, bLength, a, aOffset, aLength, maxDistance);
+        }
+
+        int[] previous = new int[bLength + 1];
+        int[] current = new int[bLength + 1];
+        for (int j = 0; j <= bLength; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= aLength; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char c = a[aOffset + i - 1];
+            for (int j = 1; j <= bLength; j++) {
+                if (c == b[bOffset + j - 1]) {
+                    current[j] = previous[j - 1];
+                } else {
+                    current[j] = 1 + Math.min(previous[j - 1], Math.min(previous[j], current[j - 1]));
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return Math.min(previous[bLength], maxDistance + 1);
+    }
+
+    /**
+     * A precompiled word. Words of up to 64 characters keep a match bitmask per character
+     * and are compared with the bit-parallel algorithm in O(n) word operations.
+     */
+    public static final class Pattern {
+        private final char[] chars;
+        // Match masks for ASCII characters, and for the few other characters of the word
+        private final long[] asciiMasks;
+        private final char[] otherChars;
+        private final long[] otherMasks;
+
+        private Pattern(char[] chars) {
+            this.chars = chars;
+            if (chars.length > WORD_BITS) {
+                this.asciiMasks = null;
+                this.otherChars = null;
+                this.otherMasks = null;
+                return;
+            }
+
+            this.asciiMasks = new long[128];
+            int others = 0;
+            char[] otherChars = new char[chars.length];
+            long[] otherMasks = new long[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                char c = chars[i];
+                if (c < 128) {
+                    asciiMasks[c] |= 1L << i;
+                    continue;
+                }
+                int k = 0;
+                while (k < others && otherChars[k] != c) {
+                    k++;
+                }
+                if (k == others) {
+                    otherChars[others++] = c;
+                }
+                otherMasks[k] |= 1L << i;
+            }
+            this.otherChars = Arrays.copyOf(otherChars, others);
+            this.otherMasks = Arrays.copyOf(otherMasks, others);
+        }
+
+        public int length() {
+            return chars.length;
+        }
+
+        /**
+         * Calculate the distance to text[offset, offset + length), giving up early once it exceeds maxDistance.
+         *
+         * @return The distance, or maxDistance + 1 if it is larger than maxDistance
+         */
+        public int distance(char[] text, int offset, int length, int maxDistance) {
+            int m = chars.length;
+            if (Math.abs(m - length) > maxDistance) {
+                return maxDistance + 1;
+            }
+            if (asciiMasks == null) {
+                return boundedDistance(chars, 0, m, text, offset, length, maxDistance);
+            }
+            if (m == 0) {
+                return length;
+            }
+
+            long highBit = 1L << (m - 1);
+            long pv = -1L;
+            long mv = 0L;
+            int score = m;
+
+            for (int j = 0; j < length; j++) {
+                long eq = matchMask(text[offset + j]);
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & highBit) != 0) {
+                    score++;
+                } else if ((mh & highBit) != 0) {
+                    score--;
+                }
+                // Each remaining character can lower the score by at most one
+                if (score - (length - j - 1) > maxDistance) {
+                    return maxDistance + 1;
+                }
+                // Row 0 grows by one per column, so a +1 enters at the bottom
+                ph = (ph << 1) | 1L;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+            }
+
+            return Math.min(score, maxDistance + 1);
+        }
+
+        public int distance(CharSequence text, int maxDistance) {
+            return distance(toChars(text), 0, text.length(), maxDistance);
+        }
+
+        private long matchMask(char c) {
+            if (c < 128) {
+                return asciiMasks[c];
+            }
+            for (int k = 0; k < otherChars.length; k++) {
+                if (otherChars[k] == c) {
+                    return otherMasks[k];
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars);
+        }
+    }
+}
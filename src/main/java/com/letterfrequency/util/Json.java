@@ -0,0 +1,205 @@
+package com.letterfrequency.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The little JSON the tool speaks: writing strings and numbers, and reading an
+ * array of strings. Writing goes straight to an Appendable, and reading pulls
+ * characters from a Reader, so neither side builds the whole document first.
+ */
+public final class Json {
+    private Json() {
+    }
+
+    /**
+     * Write the text as a quoted JSON string.
+     */
+    public static void writeString(Appendable out, CharSequence text) {
+        try {
+            out.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                }
+            }
+            out.append('"');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the number, or null if it is not finite, as JSON has no NaN or infinity.
+     */
+    public static void writeNumber(Appendable out, double value) {
+        try {
+            out.append(Double.isFinite(value) ? Double.toString(value) : "null");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a JSON array of strings, such as ["one", "two"], up to its closing bracket.
+     *
+     * @throws IllegalArgumentException If the input is not an array of strings
+     */
+    public static List<String> readStringArray(Reader in) throws IOException {
+        return readStringArray(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read a JSON array of at most maxStrings strings, up to its closing bracket.
+     * Reading stops at the first string beyond the limit.
+     *
+     * @throws IllegalArgumentException If the input is not an array of strings
+     * @throws LimitExceededException If the array has more than maxStrings strings
+     */
+    public static List<String> readStringArray(Reader in, int maxStrings) throws IOException {
+        Parser parser = new Parser(in);
+        List<String> strings = new ArrayList<>();
+        parser.expect('[');
+        int c = parser.nextNonWhitespace();
+        if (c == ']') {
+            return strings;
+        }
+        while (true) {
+            if (c != '"') {
+                throw parser.error("Expected a string");
+            }
+            if (strings.size() == maxStrings) {
+                throw new LimitExceededException("More than " + maxStrings + " strings in the array");
+            }
+            strings.add(parser.readStringBody());
+            c = parser.nextNonWhitespace();
+            if (c == ']') {
+                return strings;
+            }
+            if (c != ',') {
+                throw parser.error("Expected ',' or ']'");
+            }
+            c = parser.nextNonWhitespace();
+        }
+    }
+
+    private static final class Parser {
+        private final Reader in;
+        private final StringBuilder buffer = new StringBuilder();
+        private long position;
+
+        Parser(Reader in) {
+            this.in = in;
+        }
+
+        int next() throws IOException {
+            int c = in.read();
+            if (c == -1) {
+                throw error("Unexpected end of input");
+            }
+            position++;
+            return c;
+        }
+
+        int nextNonWhitespace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+            return c;
+        }
+
+        void expect(char expected) throws IOException {
+            if (nextNonWhitespace() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        /**
+         * Read the rest of a string whose opening quote was just read.
+         */
+        String readStringBody() throws IOException {
+            buffer.setLength(0);
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return buffer.toString();
+                }
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            buffer.append((char) c);
+                            break;
+                        case 'b':
+                            buffer.append('\b');
+                            break;
+                        case 'f':
+                            buffer.append('\f');
+                            break;
+                        case 'n':
+                            buffer.append('\n');
+                            break;
+                        case 'r':
+                            buffer.append('\r');
+                            break;
+                        case 't':
+                            buffer.append('\t');
+                            break;
+                        case 'u':
+                            buffer.append(readHexChar());
+                            break;
+                        default:
+                            throw error("Invalid escape '\\" + (char) c + "'");
+                    }
+                } else if (c < 0x20) {
+                    throw error("Control character in string");
+                } else {
+                    buffer.append((char) c);
+                }
+            }
+        }
+
+        private char readHexChar() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(next(), 16);
+                if (digit < 0) {
+                    throw error("Invalid \\u escape");
+                }
+                value = value * 16 + digit;
+            }
+            return (char) value;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at character " + position);
+        }
+    }
+}
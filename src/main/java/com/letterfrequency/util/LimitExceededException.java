@@ -0,0 +1,14 @@
+package com.letterfrequency.util;
+
+import java.io.IOException;
+
+/**
+ * Input that is larger than a limit set on it, found while it was being read.
+ */
+public class LimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
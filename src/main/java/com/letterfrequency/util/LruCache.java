@@ -0,0 +1,142 @@
+package com.letterfrequency.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, thread-safe cache with least-recently-used eviction.
+ * Entries are spread over independently locked segments by key hash, each an
+ * access-ordered LinkedHashMap, so concurrent readers rarely wait on each other.
+ * Eviction is LRU within a segment, which approximates global LRU.
+ */
+public class LruCache<K, V> {
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LruCache(int maxSize) {
+        this(maxSize, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LruCache(int maxSize, int concurrency) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        // Power-of-two segment count, but never more segments than entries
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(concurrency, maxSize)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int segmentSize = maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment<>(segmentSize);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cached value, or null if absent. A hit marks the entry as recently used.
+     * The key only needs to be equal to the stored key, so a reusable probe key can be used.
+     */
+    public V get(Object key) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public void remove(Object key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Get the cached value, computing and storing it on a miss.
+     * The value is computed outside the lock, so two threads may compute the same entry.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        // Segments take the middle bits of a mixed hash, since each segment's map uses the low bits
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[(h >>> 16) & segmentMask];
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
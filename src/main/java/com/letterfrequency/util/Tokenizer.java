@@ -0,0 +1,212 @@
+package com.letterfrequency.util;
+
+/**
+ * The one definition of letters, words and tokens that every detector shares.
+ * Characters are case folded and classified through lookup tables over Latin-1 and
+ * Latin Extended-A, the range of nearly all input, and through Character only above
+ * it. Folding never depends on the default locale, so an upper-case I folds to i
+ * even under a Turkish locale, where String.toLowerCase() would give a dotless i.
+ *
+ * <p>Folding keeps accents, as the hashed n-gram model scores accented letters in
+ * their own right. Where only the basic letters count, as in the letter and bigram
+ * histograms and the stopwords, baseLetter() maps each folded letter to the a-z
+ * letter it carries, so "&ecirc;tre" counts as "etre". That table is precomputed
+ * here, without java.text.Normalizer; ligatures and sharp s, which a single char
+ * cannot expand, map to their first letter.
+ *
+ * <ul>
+ * <li>A letter is a character for which Character.isLetter is true.
+ * <li>A word letter is a folded letter whose base letter is a to z, accented or not.
+ * <li>A word is a maximal run of word letters.
+ * <li>A token is a maximal run of characters other than the whitespace of the regex class \s.
+ * </ul>
+ *
+ * scan() folds a text into a buffer and reports its words and tokens as spans of
+ * that buffer, so no String is created for any of them.
+ */
+public final class Tokenizer {
+    // Character classes, as bits of CLASSES entries
+    private static final byte LETTER = 1;
+    private static final byte WHITESPACE = 2;
+
+    // Latin-1 and Latin Extended-A
+    private static final int TABLE_SIZE = 0x180;
+    private static final char[] FOLD = new char[TABLE_SIZE];
+    private static final byte[] CLASSES = new byte[TABLE_SIZE];
+    // Base a-z letter of each folded char, 0 for none
+    private static final char[] BASE = new char[TABLE_SIZE];
+
+    // Folded letters with diacritics, and ligatures, by the base letter they fold to
+    private static final String[][] ACCENTED_LETTERS = {
+        {"a", "\u00E0\u00E1\u00E2\u00E3\u00E4\u00E5\u0101\u0103\u0105\u00E6"}, // àáâãäåāăąæ
+        {"c", "\u00E7\u0107\u0109\u010B\u010D"}, // çćĉċč
+        {"d", "\u00F0\u010F\u0111"}, // ðďđ
+        {"e", "\u00E8\u00E9\u00EA\u00EB\u0113\u0115\u0117\u0119\u011B"}, // èéêëēĕėęě
+        {"g", "\u011D\u011F\u0121\u0123"}, // ĝğġģ
+        {"h", "\u0125\u0127"}, // ĥħ
+        {"i", "\u00EC\u00ED\u00EE\u00EF\u0129\u012B\u012D\u012F\u0131\u0133"}, // ìíîïĩīĭįıĳ
+        {"j", "\u0135"}, // ĵ
+        {"k", "\u0137\u0138"}, // ķĸ
+        {"l", "\u013A\u013C\u013E\u0140\u0142"}, // ĺļľŀł
+        {"n", "\u00F1\u0144\u0146\u0148\u0149\u014B"}, // ñńņňŉŋ
+        {"o", "\u00F2\u00F3\u00F4\u00F5\u00F6\u00F8\u014D\u014F\u0151\u0153"}, // òóôõöøōŏőœ
+        {"r", "\u0155\u0157\u0159"}, // ŕŗř
+        {"s", "\u015B\u015D\u015F\u0161\u017F\u00DF"}, // śŝşšſß
+        {"t", "\u0163\u0165\u0167\u00FE"}, // ţťŧþ
+        {"u", "\u00F9\u00FA\u00FB\u00FC\u0169\u016B\u016D\u016F\u0171\u0173"}, // ùúûüũūŭůűų
+        {"w", "\u0175"}, // ŵ
+        {"y", "\u00FD\u00FF\u0177"}, // ýÿŷ
+        {"z", "\u017A\u017C\u017E"}, // źżž
+    };
+
+    static {
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            FOLD[c] = Character.toLowerCase(c);
+            if (Character.isLetter(c)) {
+                CLASSES[c] |= LETTER;
+            }
+        }
+        for (char c : new char[] {' ', '\t', '\n', '\u000B', '\f', '\r'}) {
+            CLASSES[c] |= WHITESPACE;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            BASE[c] = c;
+        }
+        for (String[] accented : ACCENTED_LETTERS) {
+            for (char c : accented[1].toCharArray()) {
+                BASE[c] = accented[0].charAt(0);
+            }
+        }
+    }
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Receives the spans found by scan(), each as soon as it ends.
+     */
+    public interface SpanSink {
+        /**
+         * A word, a maximal run of word letters, at folded[offset, offset + length).
+         */
+        void word(int offset, int length);
+
+        /**
+         * A token, a maximal run of non-whitespace characters, at folded[offset, offset + length).
+         */
+        void token(int offset, int length);
+    }
+
+    /**
+     * Lowercase the character, the same way whatever the default locale.
+     */
+    public static char fold(char c) {
+        return c < TABLE_SIZE ? FOLD[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * The text with every character folded, for words that are kept, such as those of the profiles.
+     */
+    public static String fold(CharSequence text) {
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(text.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    public static boolean isLetter(char c) {
+        return c < TABLE_SIZE ? (CLASSES[c] & LETTER) != 0 : Character.isLetter(c);
+    }
+
+    /**
+     * Whitespace as matched by the regex class \s.
+     */
+    public static boolean isWhitespace(char c) {
+        return c < TABLE_SIZE && (CLASSES[c] & WHITESPACE) != 0;
+    }
+
+    /**
+     * Whether a folded character is a letter from a to z, with or without diacritics.
+     */
+    public static boolean isWordLetter(char folded) {
+        return folded < TABLE_SIZE && BASE[folded] != 0;
+    }
+
+    /**
+     * The a-z letter of a folded word letter without its diacritics, such as e for
+     * e with circumflex, or 0 if the character is not a word letter.
+     */
+    public static char baseLetter(char folded) {
+        return folded < TABLE_SIZE ? BASE[folded] : 0;
+    }
+
+    /**
+     * Whether a folded character is a word letter with a diacritic, or a ligature.
+     */
+    public static boolean isAccented(char folded) {
+        return folded < TABLE_SIZE && BASE[folded] != 0 && BASE[folded] != folded;
+    }
+
+    /**
+     * The text folded, with each word letter replaced by its base letter, for stopwords
+     * and other words compared without accents.
+     */
+    public static String foldAccents(CharSequence text) {
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            char c = fold(text.charAt(i));
+            folded[i] = isWordLetter(c) ? baseLetter(c) : c;
+        }
+        return new String(folded);
+    }
+
+    /**
+     * Fold the text into folded[0, text.length()) and report every word and token to the sink.
+     * Spans are reported in the order they end; a word ending where a token ends comes first.
+     *
+     * @param folded Buffer of at least text.length() characters
+     * @return Number of letters of any alphabet in the text
+     */
+    public static int scan(CharSequence text, char[] folded, SpanSink sink) {
+        int length = text.length();
+        int letters = 0;
+        int wordStart = -1;
+        int tokenStart = -1;
+
+        for (int i = 0; i < length; i++) {
+            char c = fold(text.charAt(i));
+            folded[i] = c;
+
+            if (isWordLetter(c)) {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+            } else if (wordStart >= 0) {
+                sink.word(wordStart, i - wordStart);
+                wordStart = -1;
+            }
+
+            if (isLetter(c)) {
+                letters++;
+            }
+
+            if (isWhitespace(c)) {
+                if (tokenStart >= 0) {
+                    sink.token(tokenStart, i - tokenStart);
+                    tokenStart = -1;
+                }
+            } else if (tokenStart < 0) {
+                tokenStart = i;
+            }
+        }
+
+        if (wordStart >= 0) {
+            sink.word(wordStart, length - wordStart);
+        }
+        if (tokenStart >= 0) {
+            sink.token(tokenStart, length - tokenStart);
+        }
+        return letters;
+    }
+}
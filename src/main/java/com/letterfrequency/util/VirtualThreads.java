@@ -0,0 +1,56 @@
+package com.letterfrequency.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors running one virtual thread per task when the runtime supports them (Java 21+).
+ * On older runtimes they fall back to a cached pool of daemon platform threads,
+ * so the code still builds and runs on the Java 11 baseline.
+ */
+public final class VirtualThreads {
+    private static final Method NEW_VIRTUAL_EXECUTOR = findVirtualExecutorFactory();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for every task.
+     *
+     * @param name Name prefix for the fallback platform threads
+     */
+    public static ExecutorService newExecutor(String name) {
+        if (NEW_VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Fall through to platform threads
+            }
+        }
+        return Executors.newCachedThreadPool(daemonThreadFactory(name));
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
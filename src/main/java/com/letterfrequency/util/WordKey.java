@@ -0,0 +1,83 @@
+package com.letterfrequency.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash key over a span of characters, so a word can be looked up in a map
+ * without first creating a String. A probe key is repointed with set() for each
+ * lookup; only immutable copies made with copyOf() may be stored in a map.
+ */
+public final class WordKey {
+    private char[] chars;
+    private int offset;
+    private int length;
+    private int hash;
+
+    public WordKey() {
+        this.chars = new char[0];
+    }
+
+    private WordKey(char[] chars, int offset, int length) {
+        set(chars, offset, length);
+    }
+
+    /**
+     * Create an immutable key holding its own copy of chars[offset, offset + length).
+     */
+    public static WordKey copyOf(char[] chars, int offset, int length) {
+        return new WordKey(Arrays.copyOfRange(chars, offset, offset + length), 0, length);
+    }
+
+    public static WordKey of(String word) {
+        return new WordKey(word.toCharArray(), 0, word.length());
+    }
+
+    /**
+     * Point this probe key at chars[offset, offset + length).
+     */
+    public WordKey set(char[] chars, int offset, int length) {
+        this.chars = chars;
+        this.offset = offset;
+        this.length = length;
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        this.hash = h;
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WordKey)) {
+            return false;
+        }
+        WordKey other = (WordKey) o;
+        if (hash != other.hash || length != other.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != other.chars[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, offset, length);
+    }
+}
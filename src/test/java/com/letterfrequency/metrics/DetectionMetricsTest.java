@@ -0,0 +1,34 @@
+package com.letterfrequency.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.letterfrequency.model.Language;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import org.junit.jupiter.api.Test;
+
+class DetectionMetricsTest {
+    private static final String NAME = "com.letterfrequency:type=DetectionMetrics,name=test";
+
+    @Test
+    void registeringAgainReplacesEarlierMetrics() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        DetectionMetrics first = new DetectionMetrics();
+        DetectionMetrics second = new DetectionMetrics();
+        second.recordWinner(Language.DUTCH);
+
+        ObjectName name = first.registerMBean(NAME);
+        try {
+            assertEquals(name, second.registerMBean(NAME));
+            TabularData winners = (TabularData) server.getAttribute(name, "WinningLanguages");
+            CompositeData dutch = winners.get(new Object[] {Language.DUTCH.getDisplayName()});
+            assertEquals(1L, ((Long) dutch.get("value")).longValue());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
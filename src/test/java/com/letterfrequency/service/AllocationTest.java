@@ -0,0 +1,155 @@
+package com.letterfrequency.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.letterfrequency.model.Language;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Steady-state detection must not allocate. Each check warms a call up, then measures
+ * the bytes the thread allocates over many more calls with
+ * ThreadMXBean.getThreadAllocatedBytes and expects none. Nor may a thread keep the
+ * buffers of a very long text it once scanned.
+ */
+class AllocationTest {
+    private static final int[] SIZES = {50, 1000, 10_000};
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int CALLS = 1000;
+
+    private static final Map<Language, String> SENTENCES = new EnumMap<>(Language.class);
+
+    static {
+        SENTENCES.put(Language.ENGLISH, "The old house at the end of the street had been empty for many years.");
+        SENTENCES.put(Language.DUTCH, "Het oude huis aan het einde van de straat stond al jaren leeg.");
+        SENTENCES.put(Language.FRENCH, "La vieille maison au bout de la rue était vide depuis de nombreuses années.");
+        SENTENCES.put(Language.ITALIAN, "La vecchia casa in fondo alla strada era vuota da molti anni.");
+        SENTENCES.put(Language.GERMAN, "Das alte Haus am Ende der Straße stand seit vielen Jahren leer.");
+    }
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static long threadId;
+    private static long overhead;
+
+    @BeforeAll
+    static void enableAllocationCounting() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocation counting is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        threadId = Thread.currentThread().getId();
+
+        // Reading the counter may itself allocate; measure that once and subtract it
+        overhead = threads.getThreadAllocatedBytes(threadId);
+        overhead = threads.getThreadAllocatedBytes(threadId) - overhead;
+    }
+
+    @Test
+    void detectionIntoReusedContextAllocatesNothing() {
+        CombinedLanguageDetectionService service = new CombinedLanguageDetectionService();
+        DetectionContext context = new DetectionContext();
+
+        for (int size : SIZES) {
+            for (Language language : Language.values()) {
+                String text = text(language, size);
+                for (int i = 0; i < WARMUP_CALLS * 50 / size + 10; i++) {
+                    service.detectLanguage(text, context);
+                }
+
+                long before = threads.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < CALLS; i++) {
+                    service.detectLanguage(text, context);
+                }
+                assertEquals(0, allocatedSince(before), language + " text of " + size + " chars allocated");
+            }
+        }
+    }
+
+    @Test
+    void incrementalEditsAllocateNothing() {
+        CombinedLanguageDetectionService service = new CombinedLanguageDetectionService();
+
+        for (Language language : Language.values()) {
+            IncrementalDetector detector = new IncrementalDetector(service, text(language, 1000));
+            for (int i = 0; i < WARMUP_CALLS * 10; i++) {
+                keystroke(detector, i);
+            }
+
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < CALLS; i++) {
+                keystroke(detector, i);
+            }
+            assertEquals(0, allocatedSince(before), language + " edits allocated");
+        }
+    }
+
+    @Test
+    void threadContextDoesNotKeepBuffersOfLongTexts() {
+        CombinedLanguageDetectionService service = new CombinedLanguageDetectionService();
+        String longText = text(Language.FRENCH, 1_000_000);
+        String shortText = text(Language.FRENCH, 100);
+
+        service.detectLanguage(longText);
+        service.detectLanguage(shortText);
+        assertRetainedAtMost(DetectionContext.MAX_RETAINED_LENGTH);
+
+        service.getLanguageScores(longText);
+        service.getLanguageScores(shortText);
+        assertRetainedAtMost(DetectionContext.MAX_RETAINED_LENGTH);
+
+        // Batch workers keep their contexts too; with one worker, its context can be checked
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            List<String> batch = Arrays.asList(longText, shortText, longText, shortText);
+            assertEquals(service.getLanguageScores(longText), service.getLanguageScores(batch, pool).get(2));
+            assertTrue(pool.invoke(ForkJoinTask.adapt(AllocationTest::retainedLength))
+                <= DetectionContext.MAX_RETAINED_LENGTH);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertRetainedAtMost(int length) {
+        assertTrue(retainedLength() <= length, "Thread context keeps " + retainedLength() + " chars");
+    }
+
+    private static int retainedLength() {
+        return DetectionContext.forCurrentThread().features.chars().length;
+    }
+
+    /**
+     * Type a letter somewhere in the text, score it, take the letter out and score again.
+     */
+    private static void keystroke(IncrementalDetector detector, int i) {
+        int offset = (int) ((i * 7919L) % detector.length());
+        detector.insert(offset, "e");
+        detector.getLanguage();
+        detector.delete(offset, 1);
+        detector.getLanguage();
+    }
+
+    private static long allocatedSince(long before) {
+        return Math.max(threads.getThreadAllocatedBytes(threadId) - before - overhead, 0);
+    }
+
+    private static String text(Language language, int size) {
+        String sentence = SENTENCES.get(language);
+        StringBuilder text = new StringBuilder(size + sentence.length() + 1);
+        while (text.length() < size) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(sentence);
+        }
+        text.setLength(size);
+        return text.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package com.letterfrequency.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.model.LanguageCommonWords;
+import com.letterfrequency.util.EditDistance;
+import com.letterfrequency.util.Tokenizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A lookup in the symmetric-delete index must find the same best similarity per
+ * language as comparing the word with every vocabulary word.
+ */
+class CommonWordIndexTest {
+    private static final Map<Language, List<String>> VOCABULARY = LanguageCommonWords.getCommonWords();
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzàéèëïöüßç";
+
+    @Test
+    void lookupMatchesBruteForceScan() {
+        CommonWordIndex index = new CommonWordIndex(VOCABULARY, CommonWordIndex.DEFAULT_MAX_DISTANCE);
+        List<String> words = new ArrayList<>();
+        VOCABULARY.values().forEach(words::addAll);
+        Random random = new Random(6);
+
+        double[] similarities = new double[Language.values().length];
+        for (int round = 0; round < 5000; round++) {
+            String word = round % 10 == 0
+                ? randomWord(random)
+                : mutate(Tokenizer.fold(words.get(random.nextInt(words.size()))), random.nextInt(4), random);
+            double[] expected = bruteForce(word, index.getMaxDistance());
+
+            // Look the word up at an offset inside a larger buffer, as the detectors do
+            char[] chars = (" " + word + " x").toCharArray();
+            boolean found = index.findBestSimilarities(chars, 1, word.length(), similarities);
+            assertArrayEquals(expected, similarities, word);
+            assertEquals(Arrays.stream(expected).anyMatch(s -> s >= 0), found, word);
+        }
+    }
+
+    /**
+     * Best similarity per language over the whole vocabulary, -1 where no word is within maxDistance.
+     */
+    private static double[] bruteForce(String word, int maxDistance) {
+        double[] best = new double[Language.values().length];
+        Arrays.fill(best, -1.0);
+        for (Map.Entry<Language, List<String>> entry : VOCABULARY.entrySet()) {
+            for (String common : entry.getValue()) {
+                String folded = Tokenizer.fold(common);
+                int distance = EditDistance.distance(word, folded);
+                if (distance <= maxDistance) {
+                    int maxLength = Math.max(word.length(), folded.length());
+                    double similarity = maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
+                    int lang = entry.getKey().ordinal();
+                    best[lang] = Math.max(best[lang], similarity);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The word after the given number of random single-character inserts, deletes and substitutions.
+     */
+    private static String mutate(String word, int edits, Random random) {
+        StringBuilder result = new StringBuilder(word);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(result.length() + 1);
+            int kind = result.length() == 0 || position == result.length() ? 0 : random.nextInt(3);
+            if (kind == 0) {
+                result.insert(position, randomLetter(random));
+            } else if (kind == 1) {
+                result.deleteCharAt(position);
+            } else {
+                result.setCharAt(position, randomLetter(random));
+            }
+        }
+        return result.toString();
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 1 + random.nextInt(12); i > 0; i--) {
+            word.append(randomLetter(random));
+        }
+        return word.toString();
+    }
+
+    private static char randomLetter(Random random) {
+        return LETTERS.charAt(random.nextInt(LETTERS.length()));
+    }
+}
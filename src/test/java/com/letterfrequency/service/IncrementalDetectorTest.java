@@ -0,0 +1,131 @@
+package com.letterfrequency.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.letterfrequency.model.Language;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Edits must leave an IncrementalDetector with exactly the counts of a detector that
+ * scans the edited text from scratch, at a cost that does not grow with the text.
+ */
+class IncrementalDetectorTest {
+    private static final CombinedLanguageDetectionService SERVICE = new CombinedLanguageDetectionService();
+
+    private static final String BEFORE = "Het oude huis aan het einde van de straat stond al jaren leeg. ";
+    private static final String AFTER = " Niemand wist wie de eigenaar was.";
+
+    // Pieces to type: words, stopwords up to the longest, common words, accents, punctuation,
+    // runs of whitespace and digits, and tokens longer than any stopword or common word
+    private static final String[] FRAGMENTS = {
+        "e", "de", "het", " ", "  \n", "the ", "misschien", "pourquoi ", "essere", "mettre",
+        "straße", "été ", "città", ".", ", ", "-", "42",
+        "0000000000", "Onafhankelijkheidsverklaring", "https://example.com/x?y=z ", "aaaaaaaaaaaaaaaaaaaa",
+    };
+
+    @Test
+    void editsInsideLongNonLetterRunMatchFreshScan() {
+        String run = "1234567890-+/=".repeat(200 * 1024 / 14);
+        IncrementalDetector detector = new IncrementalDetector(SERVICE, BEFORE + run + AFTER);
+
+        int middle = BEFORE.length() + run.length() / 2;
+        detector.insert(middle, "de");
+        assertSameCounts(detector);
+        detector.insert(middle + 1, " ");
+        assertSameCounts(detector);
+        detector.delete(middle + 1, 1);
+        detector.delete(middle, 2);
+        assertSameCounts(detector);
+
+        // At the edges of the run, where the bigram chain joins the words around it
+        detector.insert(BEFORE.length(), "straat");
+        assertSameCounts(detector);
+        detector.insert(BEFORE.length() + 6 + run.length(), "huis");
+        assertSameCounts(detector);
+        detector.delete(BEFORE.length() - 1, 8);
+        assertSameCounts(detector);
+    }
+
+    @Test
+    void randomEditsMatchFreshScan() {
+        Random random = new Random(25);
+        for (int round = 0; round < 50; round++) {
+            StringBuilder expected = new StringBuilder(round % 2 == 0 ? "" : BEFORE + AFTER);
+            IncrementalDetector detector = new IncrementalDetector(SERVICE, expected.toString());
+            for (int edit = 0; edit < 200; edit++) {
+                int offset = random.nextInt(expected.length() + 1);
+                if (expected.length() > 0 && random.nextInt(3) == 0) {
+                    int length = Math.min(expected.length() - offset, 1 + random.nextInt(random.nextBoolean() ? 3 : 40));
+                    detector.delete(offset, length);
+                    expected.delete(offset, offset + length);
+                } else {
+                    // Now and then a long paste, which grows the gap
+                    String fragment = random.nextInt(50) == 0
+                        ? BEFORE.repeat(1 + random.nextInt(100))
+                        : FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+                    detector.insert(offset, fragment);
+                    expected.insert(offset, fragment);
+                }
+                assertEquals(expected.toString(), detector.getText());
+                if (edit % 10 == 0 || expected.length() < 500) {
+                    assertSameCounts(detector);
+                }
+            }
+            assertSameCounts(detector);
+        }
+    }
+
+    @Test
+    void keystrokeInsideLongNonLetterRunDoesNotRescanIt() {
+        String text = BEFORE + "1234567890".repeat(20 * 1024) + AFTER;
+        IncrementalDetector detector = new IncrementalDetector(SERVICE, text);
+        int offset = text.length() / 2;
+
+        // A keystroke that rescanned the run would cost about as much as scanning the whole text
+        long scan = Long.MAX_VALUE;
+        long keystroke = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            new IncrementalDetector(SERVICE, text).getLanguage();
+            scan = Math.min(scan, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                detector.insert(offset, "e");
+                detector.getLanguage();
+                detector.delete(offset, 1);
+                detector.getLanguage();
+            }
+            keystroke = Math.min(keystroke, (System.nanoTime() - start) / 100);
+        }
+        assertTrue(keystroke * 10 < scan, "Keystroke took " + keystroke + " ns, scanning the text " + scan + " ns");
+        assertSameCounts(detector);
+    }
+
+    /**
+     * Compare every count and running sum with those of a detector that scanned the
+     * current text in one insert.
+     */
+    static void assertSameCounts(IncrementalDetector detector) {
+        IncrementalDetector fresh = new IncrementalDetector(SERVICE, detector.getText());
+        assertArrayEquals(fresh.letterCounts(), detector.letterCounts(), "letter counts");
+        assertArrayEquals(fresh.bigramCounts(), detector.bigramCounts(), "bigram counts");
+        assertArrayEquals(fresh.stopwordCounts(), detector.stopwordCounts(), "stopword counts");
+        assertArrayEquals(fresh.levenshteinMatches(), detector.levenshteinMatches(), "Levenshtein matches");
+        assertArrayEquals(fresh.ngramLogLikelihoods(), detector.ngramLogLikelihoods(), "n-gram log-likelihoods");
+        assertEquals(fresh.ngramCount(), detector.ngramCount(), "n-gram count");
+        assertEquals(fresh.getLetterTotal(), detector.getLetterTotal(), "letter total");
+        assertEquals(fresh.getAlphabeticTotal(), detector.getAlphabeticTotal(), "alphabetic total");
+        assertEquals(fresh.getAccentedTotal(), detector.getAccentedTotal(), "accented total");
+        assertEquals(fresh.getLetterSquares(), detector.getLetterSquares(), "letter squares");
+        assertEquals(fresh.getBigramSquares(), detector.getBigramSquares(), "bigram squares");
+        assertEquals(fresh.getCoincidences(), detector.getCoincidences(), "coincidences");
+        // The dot products are sums of doubles, added in a different order
+        for (Language language : Language.values()) {
+            assertEquals(fresh.getScore(language), detector.getScore(language), 1e-9, language + " score");
+        }
+    }
+}
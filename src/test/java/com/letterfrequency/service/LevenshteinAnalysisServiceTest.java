@@ -0,0 +1,23 @@
+package com.letterfrequency.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.letterfrequency.util.WordKey;
+import org.junit.jupiter.api.Test;
+
+class LevenshteinAnalysisServiceTest {
+    @Test
+    void tokensTooLongToMatchAreNotCached() {
+        LevenshteinAnalysisService service = new LevenshteinAnalysisService();
+        WordKey probe = new WordKey();
+        char[] token = "https://example.com/0123456789abcdef".toCharArray();
+
+        assertNull(service.findClosestMatch(token, 0, token.length, probe).getLanguage());
+        assertEquals(0, service.getCacheSize());
+
+        char[] word = "huis".toCharArray();
+        service.findClosestMatch(word, 0, word.length, probe);
+        assertEquals(1, service.getCacheSize());
+    }
+}
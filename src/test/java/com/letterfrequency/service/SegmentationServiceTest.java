@@ -0,0 +1,122 @@
+package com.letterfrequency.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.letterfrequency.model.Language;
+import com.letterfrequency.util.Tokenizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A text that fits in one window must come out as a single segment in the language
+ * detectLanguage finds, and a window slid to any span between words must score as that
+ * span detected on its own.
+ */
+class SegmentationServiceTest {
+    private static final CombinedLanguageDetectionService SERVICE = new CombinedLanguageDetectionService();
+
+    private static final String[] SENTENCES = {
+        "The old house at the end of the street had been empty for many years.",
+        "Het oude huis aan het einde van de straat stond al jaren leeg.",
+        "La vieille maison au bout de la rue était vide depuis de nombreuses années.",
+        "La vecchia casa in fondo alla strada era vuota da molti anni.",
+        "Das alte Haus am Ende der Straße stand seit vielen Jahren leer.",
+    };
+
+    @Test
+    void textWithinOneWindowIsOneSegmentInDetectedLanguage() {
+        Random random = new Random(24);
+        for (int round = 0; round < 200; round++) {
+            String text = randomText(random, 1 + random.nextInt(1000));
+            int windowSize = text.length() + random.nextInt(50);
+            SegmentationService segmentation = new SegmentationService(SERVICE, windowSize, 1 + random.nextInt(40));
+
+            List<SegmentationService.Segment> segments = segmentation.segment(text);
+            assertEquals(1, segments.size(), text);
+            SegmentationService.Segment segment = segments.get(0);
+            assertEquals(0, segment.getStart(), text);
+            assertEquals(text.length(), segment.getEnd(), text);
+            assertEquals(SERVICE.detectLanguage(text), segment.getLanguage(), text);
+            assertEquals(confidence(SERVICE.getLanguageScores(text)), segment.getConfidence(), 1e-9, text);
+        }
+    }
+
+    @Test
+    void windowSlidBetweenWordsScoresLikeDetection() {
+        Random random = new Random(42);
+        DetectionContext context = new DetectionContext();
+        for (int round = 0; round < 20; round++) {
+            String text = randomText(random, 5000);
+            List<Integer> starts = new ArrayList<>();
+            List<Integer> ends = new ArrayList<>();
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == 0 || Tokenizer.isWhitespace(text.charAt(i - 1))) {
+                    starts.add(i);
+                }
+                if (i == text.length() || Tokenizer.isWhitespace(text.charAt(i))) {
+                    ends.add(i);
+                }
+            }
+
+            WindowFeatures features = SERVICE.newWindowFeatures(text);
+            int startIndex = 0;
+            int end = 0;
+            while (startIndex < starts.size() - 1) {
+                // Both ends only move forward; windows of every weighting band, and some empty ones
+                startIndex = Math.min(starts.size() - 1, startIndex + random.nextInt(5));
+                int start = starts.get(startIndex);
+                int size = new int[] {0, 30, 120, 400, 1200}[random.nextInt(5)];
+                end = firstAtLeast(ends, Math.max(end, start + size));
+                features.slideTo(start, end);
+                if (features.getAlphabeticTotal() == 0) {
+                    continue;
+                }
+
+                SERVICE.scoreWindow(features, context);
+                Map<Language, Double> expected = SERVICE.getLanguageScores(text.substring(start, end));
+                for (Language language : Language.values()) {
+                    assertEquals(expected.get(language), context.getScore(language), 1e-9,
+                        language + " in [" + start + ", " + end + ")");
+                }
+            }
+        }
+    }
+
+    private static int firstAtLeast(List<Integer> positions, int position) {
+        for (int candidate : positions) {
+            if (candidate >= position) {
+                return candidate;
+            }
+        }
+        return positions.get(positions.size() - 1);
+    }
+
+    /**
+     * The confidence SegmentationService gives a block with these scores.
+     */
+    private static double confidence(Map<Language, Double> scores) {
+        double best = 0.0;
+        double second = 0.0;
+        for (double score : scores.values()) {
+            if (score > best) {
+                second = best;
+                best = score;
+            } else {
+                second = Math.max(second, score);
+            }
+        }
+        return best <= 0.0 ? 0.0 : (best - second) / best;
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(random.nextBoolean() ? " " : "\n");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.letterfrequency.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.letterfrequency.model.Language;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Text read in chunks must score exactly as the same text passed as a String, wherever
+ * the chunk boundaries fall: inside words, stopwords, n-grams and UTF-8 sequences.
+ */
+class StreamingDetectionTest {
+    private static final CombinedLanguageDetectionService SERVICE = new CombinedLanguageDetectionService();
+
+    private static final String[] SENTENCES = {
+        "The old house at the end of the street had been empty for many years.",
+        "Het oude huis aan het einde van de straat stond al jaren leeg.",
+        "La vieille maison au bout de la rue était vide depuis de nombreuses années.",
+        "La vecchia casa in fondo alla strada era vuota da molti anni.",
+        "Das alte Haus am Ende der Straße stand seit vielen Jahren leer.",
+        "Voir https://example.com/a-very-long-path?with=query&and=more, 12345 -- !!",
+    };
+
+    @Test
+    void readerInRandomChunksScoresLikeString() throws IOException {
+        Random random = new Random(10);
+        for (int round = 0; round < 300; round++) {
+            String text = randomText(random);
+            Map<Language, Double> expected = SERVICE.getLanguageScores(text);
+
+            int maxChunk = 1 + random.nextInt(random.nextBoolean() ? 8 : 300);
+            Map<Language, Double> streamed = SERVICE.getLanguageScores(new ChunkedReader(text, maxChunk, random));
+            assertEquals(expected, streamed, text.length() + " chars in chunks of up to " + maxChunk);
+        }
+    }
+
+    @Test
+    void inputStreamInRandomChunksScoresLikeString() throws IOException {
+        Random random = new Random(8);
+        for (int round = 0; round < 100; round++) {
+            String text = randomText(random);
+            Map<Language, Double> expected = SERVICE.getLanguageScores(text);
+
+            // Chunks of a few bytes split the two-byte UTF-8 sequences of the accented letters
+            InputStream in = new ChunkedInputStream(text.getBytes(StandardCharsets.UTF_8), 1 + random.nextInt(5), random);
+            assertEquals(expected, SERVICE.getLanguageScores(in), text.length() + " chars");
+        }
+    }
+
+    /**
+     * Sentences of random languages, with random lengths across the weighting bands.
+     */
+    private static String randomText(Random random) {
+        int length = new int[] {20, 100, 300, 1000, 20_000}[random.nextInt(5)];
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(random.nextBoolean() ? " " : "\n");
+        }
+        text.setLength(random.nextInt(length) + 1);
+        return text.toString();
+    }
+
+    /**
+     * Reader that returns at most a random number of characters per read.
+     */
+    private static final class ChunkedReader extends Reader {
+        private final String text;
+        private final int maxChunk;
+        private final Random random;
+        private int position;
+
+        ChunkedReader(String text, int maxChunk, Random random) {
+            this.text = text;
+            this.maxChunk = maxChunk;
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, text.length() - position), 1 + random.nextInt(maxChunk));
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Stream that returns at most a random number of bytes per read.
+     */
+    private static final class ChunkedInputStream extends ByteArrayInputStream {
+        private final int maxChunk;
+        private final Random random;
+
+        ChunkedInputStream(byte[] bytes, int maxChunk, Random random) {
+            super(bytes);
+            this.maxChunk = maxChunk;
+            this.random = random;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 1 + random.nextInt(maxChunk)));
+        }
+    }
+}
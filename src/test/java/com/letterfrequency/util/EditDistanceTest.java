@@ -0,0 +1,82 @@
+package com.letterfrequency.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The rolling-row and bit-parallel kernels must agree with the full dynamic program,
+ * and the bounded variants must return the distance or maxDistance + 1.
+ */
+class EditDistanceTest {
+    // A small alphabet, so that random words share letters, with characters past ASCII
+    private static final String ALPHABET = "abcdeéëßø";
+    private static final int ROUNDS = 20_000;
+
+    @Test
+    void distanceMatchesFullMatrix() {
+        Random random = new Random(5);
+        for (int round = 0; round < ROUNDS; round++) {
+            String a = randomWord(random, 12);
+            String b = randomWord(random, 12);
+            int expected = naiveDistance(a, b);
+
+            assertEquals(expected, EditDistance.distance(a, b), a + " / " + b);
+            for (int max = 0; max <= 6; max++) {
+                assertEquals(Math.min(expected, max + 1), EditDistance.distance(a, b, max),
+                    a + " / " + b + " within " + max);
+            }
+        }
+    }
+
+    @Test
+    void patternMatchesFullMatrix() {
+        Random random = new Random(64);
+        for (int round = 0; round < ROUNDS; round++) {
+            // Up to 70 characters, so that patterns past 64 take the rolling-row path
+            String word = randomWord(random, random.nextInt(8) == 0 ? 70 : 12);
+            String text = randomWord(random, random.nextInt(8) == 0 ? 70 : 12);
+            EditDistance.Pattern pattern = EditDistance.compile(word);
+            int expected = naiveDistance(word, text);
+
+            // Place the text in the middle of a larger array
+            String padding = randomWord(random, 4);
+            char[] chars = (padding + text + padding).toCharArray();
+            for (int max : new int[] {0, 1, 2, 3, 8, 100}) {
+                assertEquals(Math.min(expected, max + 1),
+                    pattern.distance(chars, padding.length(), text.length(), max),
+                    word + " / " + text + " within " + max);
+            }
+            assertEquals(Math.min(expected, 3), pattern.distance(text, 2), word + " / " + text);
+        }
+    }
+
+    private static String randomWord(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Levenshtein distance from the full (a.length() + 1) x (b.length() + 1) matrix.
+     */
+    private static int naiveDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                d[i][j] = Math.min(substitution, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}